@@ -0,0 +1,137 @@
+package benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line and always adds
+ * the gc profiler, so every run reports allocation rate next to throughput, and
+ * writes the results to jmh-result.json.
+ *
+ * With -Dbaseline=file the results are checked against a baseline, benchmarks/baseline.properties
+ * is the checked in one. The run fails with exit status 1 when a benchmark's throughput dropped
+ * more than the tolerance below its baseline, or it allocates more per operation than the
+ * baseline plus the tolerance and one byte. Benchmarks the baseline does not have are only
+ * reported. The tolerance is 0.25 by default, -Dbaseline.tolerance changes it. Throughput
+ * depends on the machine, so compare on the one the baseline was recorded on, or record a
+ * new one there first with -Dbaseline.update=true, which writes the results to the file.
+ *
+ * <pre>
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar                     # everything
+ * java -jar benchmarks/target/benchmarks.jar TickBenchmark.step -p size=huge
+ * java -Dbaseline=benchmarks/baseline.properties -jar benchmarks/target/benchmarks.jar
+ * </pre>
+ */
+public class BenchmarkMain {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        String baseline = System.getProperty("baseline");
+        if (baseline == null) {
+            return;
+        }
+        Path file = Path.of(baseline);
+        if (Boolean.getBoolean("baseline.update")) {
+            writeBaseline(file, results);
+            System.out.println("Wrote the baseline of " + results.size() + " benchmarks to " + file);
+        } else if (!checkBaseline(file, results, Double.parseDouble(System.getProperty("baseline.tolerance", "0.25")))) {
+            System.exit(1);
+        }
+    }
+
+    // true if nothing regressed, prints every benchmark next to its baseline
+    private static boolean checkBaseline(Path file, Collection<RunResult> results, double tolerance) throws IOException {
+        Properties baseline = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            baseline.load(in);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (RunResult result : results) {
+            String key = keyOf(result.getParams());
+            double ops = result.getPrimaryResult().getScore();
+            double allocated = allocatedPerOp(result);
+            String baseOps = baseline.getProperty(key + ".ops");
+            if (baseOps == null) {
+                System.out.printf(Locale.ROOT, "%-60s %12.3f ops/ms  no baseline%n", key, ops);
+                continue;
+            }
+            double expectedOps = Double.parseDouble(baseOps);
+            double expectedAllocated = Double.parseDouble(baseline.getProperty(key + ".alloc", "0"));
+            boolean slower = ops < expectedOps * (1 - tolerance);
+            boolean allocates = allocated > expectedAllocated * (1 + tolerance) + 1;
+            System.out.printf(Locale.ROOT, "%-60s %12.3f ops/ms (baseline %.3f)  %10.3f B/op (baseline %.3f)%s%n",
+                    key, ops, expectedOps, allocated, expectedAllocated,
+                    slower || allocates ? "  REGRESSED" : "");
+            if (slower || allocates) {
+                regressions.add(key);
+            }
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println(regressions.size() + " benchmarks regressed against " + file + ": " + regressions);
+        }
+        return regressions.isEmpty();
+    }
+
+    private static void writeBaseline(Path file, Collection<RunResult> results) throws IOException {
+        Map<String, String> lines = new TreeMap<>();
+        for (RunResult result : results) {
+            String key = keyOf(result.getParams());
+            lines.put(key + ".ops", String.format(Locale.ROOT, "%.3f", result.getPrimaryResult().getScore()));
+            lines.put(key + ".alloc", String.format(Locale.ROOT, "%.3f", allocatedPerOp(result)));
+        }
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("# Throughput (ops/ms) and allocation (B/op) per benchmark, written by BenchmarkMain -Dbaseline.update=true\n");
+            for (Map.Entry<String, String> line : lines.entrySet()) {
+                out.write(line.getKey() + "=" + line.getValue() + "\n");
+            }
+        }
+    }
+
+    // TickBenchmark.step[ghosts-500,size-huge], without the package
+    private static String keyOf(BenchmarkParams params) {
+        String name = params.getBenchmark();
+        StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+        String separator = "[";
+        for (String param : params.getParamsKeys()) {
+            key.append(separator).append(param).append('-').append(params.getParam(param));
+            separator = ",";
+        }
+        return params.getParamsKeys().isEmpty() ? key.toString() : key.append(']').toString();
+    }
+
+    private static double allocatedPerOp(RunResult result) {
+        Result<?> allocation = result.getSecondaryResults().get(ALLOCATION);
+        return allocation != null ? allocation.getScore() : 0;
+    }
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Board.updateBoard after one simulation tick, the per frame work of the Swing view.
+ * Runs headless, the board is never shown so this measures the view's own
+ * bookkeeping, not the painting done later on the EDT. Replays and metrics are off so the
+ * forks leave no files behind.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dpacman.replays=off", "-Dpacman.metrics=off"})
+public class BoardBenchmark {
+    @Param({"small", "medium", "large", "extra-large", "huge"})
+    public String size;
+
+    private Object board;
+    private Object state;
+    private int probe;
+
+    @Setup(Level.Iteration)
+    public void newBoard() throws Throwable {
+        board = Game.NEW_BOARD.invokeExact(size, (Object) null);
+        // the benchmark drives the ticks, not the board's own session
+        Game.STOP_SESSION.invokeExact(board);
+        state = Game.BOARD_STATE.invokeExact(board);
+    }
+
+    /** Once the game has ended the state stops changing and only the view work is left. */
+    @Benchmark
+    public void updateBoard() throws Throwable {
+        Game.STEP.invokeExact(state, (probe++ >> 4) & 3);
+        Game.UPDATE_BOARD.invokeExact(board);
+    }
+}
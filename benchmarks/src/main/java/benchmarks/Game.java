@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Handles to the game classes. The game lives in the default package, which
+ * cannot be imported from a named package and JMH refuses benchmarks in the
+ * default package, so the benchmarks call into it through method handles.
+ * The handles are static final, so the JIT inlines them like direct calls.
+ */
+final class Game {
+    static final MethodHandle NEW_STATE;       // (int size, int ghosts, long seed) -> GameState
+    static final MethodHandle STEP;            // (GameState, int input)
+    static final MethodHandle IS_GAME_OVER;    // (GameState) -> boolean
+    static final MethodHandle HAS_FOOD;        // (GameState) -> boolean
+    static final MethodHandle IS_GHOST;        // (GameState, int, int) -> boolean
+    static final MethodHandle IS_UPGRADE;      // (GameState, int, int) -> boolean
+    static final MethodHandle MOVE_GHOSTS;     // (GameState), one GhostSwarm move of every ghost: decide, claim, apply
+    static final MethodHandle GENERATE_UPGRADE; // (GameState)
+    static final MethodHandle SIZE_FOR;        // (String) -> int
+
+    static final MethodHandle NEW_BOARD;       // (String sizeType, JFrame) -> Board
+    static final MethodHandle BOARD_STATE;     // (Board) -> GameState
+    static final MethodHandle UPDATE_BOARD;    // (Board)
+    static final MethodHandle STOP_SESSION;    // (Board)
+
+    private Game() {
+    }
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> state = Class.forName("GameState");
+            Class<?> board = Class.forName("Board");
+            Class<?> session = Class.forName("GameSession");
+
+            NEW_STATE = lookup.findConstructor(state, MethodType.methodType(void.class, int.class, int.class, long.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class, long.class));
+            STEP = virtual(lookup, state, "step", void.class, int.class);
+            IS_GAME_OVER = virtual(lookup, state, "isGameOver", boolean.class);
+            HAS_FOOD = virtual(lookup, state, "hasFood", boolean.class);
+            IS_GHOST = virtual(lookup, state, "isGhost", boolean.class, int.class, int.class);
+            IS_UPGRADE = virtual(lookup, state, "isUpgrade", boolean.class, int.class, int.class);
+            MOVE_GHOSTS = virtual(lookup, state, "moveGhosts", void.class);
+            GENERATE_UPGRADE = virtual(lookup, state, "generateUpgrade", void.class);
+            SIZE_FOR = lookup.findStatic(state, "sizeFor", MethodType.methodType(int.class, String.class));
+
+            Class<?> frame = Class.forName("javax.swing.JFrame");
+            NEW_BOARD = lookup.findConstructor(board, MethodType.methodType(void.class, String.class, frame))
+                    .asType(MethodType.methodType(Object.class, String.class, Object.class));
+            BOARD_STATE = virtual(lookup, board, "getState", state);
+            UPDATE_BOARD = virtual(lookup, board, "updateBoard", void.class);
+            Field sessionField = board.getDeclaredField("session");
+            sessionField.setAccessible(true);
+            MethodHandle stop = virtual(lookup, session, "stop", void.class);
+            STOP_SESSION = MethodHandles.filterArguments(stop, 0,
+                    lookup.unreflectGetter(sessionField).asType(MethodType.methodType(Object.class, Object.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // handle for any instance method, private ones included, with the receiver, game class parameters and return erased to Object
+    private static MethodHandle virtual(MethodHandles.Lookup lookup, Class<?> owner, String name,
+                                        Class<?> returnType, Class<?>... parameterTypes) throws ReflectiveOperationException {
+        Method method = owner.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        MethodHandle handle = lookup.unreflect(method);
+        return handle.asType(handle.type().erase());
+    }
+
+    static Object newState(String sizeType, int ghosts, long seed) {
+        try {
+            return NEW_STATE.invokeExact((int) SIZE_FOR.invokeExact(sizeType), ghosts, seed);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
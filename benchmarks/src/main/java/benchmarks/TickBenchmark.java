@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per tick hot paths of the simulation across all board sizes and ghost counts.
+ * Each benchmark runs against a game that has already been played for a while,
+ * so food has been eaten and upgrades have spawned.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+    private static final int WARM_TICKS = 200;
+
+    @Param({"small", "medium", "large", "extra-large", "huge"})
+    public String size;
+
+    @Param({"5", "50", "500"})
+    public int ghosts;
+
+    private Object state;
+    private int side; // rows and columns of the board, probes stay inside it
+    private long seed;
+    private Random input;
+    private int probe;
+
+    @Setup(Level.Iteration)
+    public void newGame() throws Throwable {
+        input = new Random(42);
+        state = playedGame();
+        side = (int) Game.SIZE_FOR.invokeExact(size);
+    }
+
+    // a fresh seeded game stepped WARM_TICKS ticks with random input, or until it ended
+    private Object playedGame() throws Throwable {
+        Object game = Game.newState(size, ghosts, seed++);
+        for (int i = 0; i < WARM_TICKS && !(boolean) Game.IS_GAME_OVER.invokeExact(game); i++) {
+            Game.STEP.invokeExact(game, input.nextInt(4));
+        }
+        return game;
+    }
+
+    /** A full tick. Ended games are replaced, which is rare next to the number of ticks measured. */
+    @Benchmark
+    public void step() throws Throwable {
+        if ((boolean) Game.IS_GAME_OVER.invokeExact(state)) {
+            state = playedGame();
+        }
+        Game.STEP.invokeExact(state, (probe++ & 63) == 0 ? input.nextInt(4) : -1);
+    }
+
+    @Benchmark
+    public boolean hasFood() throws Throwable {
+        return (boolean) Game.HAS_FOOD.invokeExact(state);
+    }
+
+    @Benchmark
+    public boolean isGhost() throws Throwable {
+        int cell = Integer.remainderUnsigned(probe++, side * side);
+        return (boolean) Game.IS_GHOST.invokeExact(state, cell / side, cell % side);
+    }
+
+    @Benchmark
+    public boolean isUpgrade() throws Throwable {
+        int cell = Integer.remainderUnsigned(probe++, side * side);
+        return (boolean) Game.IS_UPGRADE.invokeExact(state, cell / side, cell % side);
+    }
+
+    /** One GhostSwarm move of every ghost: the distance field, then each ghost decides, claims its cell and moves. */
+    @Benchmark
+    public void chasePacman() throws Throwable {
+        Game.MOVE_GHOSTS.invokeExact(state);
+    }
+
+    @Benchmark
+    public void generateUpgrade() throws Throwable {
+        Game.GENERATE_UPGRADE.invokeExact(state);
+    }
+}
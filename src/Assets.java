@@ -0,0 +1,71 @@
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Startup pipeline for the images under src/images. Everything is decoded in
+ * parallel on background threads while the menu comes up, and the sprites are
+ * pre-scaled for every board size so starting a game does not stall on them.
+ * Timings of the startup phases are printed relative to JVM start.
+ */
+public final class Assets {
+    public static final String BACKGROUND = "bg_image.jpg";
+    private static final String[] IMAGES = {
+            BACKGROUND, "cherry.png",
+            "ghost0.png", "ghost1.png", "ghost2.png", "ghost3.png", "ghost4.png",
+            "pacman_up.png", "pacman_up_closed.png", "pacman_down.png", "pacman_down_closed.png",
+            "pacman_left.png", "pacman_left_closed.png", "pacman_right.png", "pacman_right_closed.png"
+    };
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), IMAGES.length)), runnable -> {
+                Thread thread = new Thread(runnable, "asset-loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1); // stay out of the way of the EDT
+                return thread;
+            });
+
+    private static CompletableFuture<Void> preload;
+
+    private Assets() {
+    }
+
+    /** Starts decoding and pre-scaling every image, only the first call does any work. */
+    public static synchronized CompletableFuture<Void> preload() {
+        if (preload != null) {
+            return preload;
+        }
+        CompletableFuture<?>[] decoded = new CompletableFuture<?>[IMAGES.length];
+        for (int i = 0; i < IMAGES.length; i++) {
+            String name = IMAGES[i];
+            decoded[i] = CompletableFuture.runAsync(() -> {
+                SpriteCache.original(name);
+                if (!name.equals(BACKGROUND)) {
+                    for (String sizeType : GameState.SIZE_TYPES) {
+                        SpriteCache.get(name, Board.cellSizeFor(GameState.sizeFor(sizeType)));
+                    }
+                }
+            }, LOADER);
+        }
+        preload = CompletableFuture.allOf(decoded).thenRun(() -> logTiming("assets ready"));
+        return preload;
+    }
+
+    /** The decoded image, completing on a loader thread once it is available. */
+    public static CompletableFuture<BufferedImage> image(String name) {
+        return CompletableFuture.supplyAsync(() -> SpriteCache.original(name), LOADER);
+    }
+
+    /** Runs background work such as rescaling on the loader threads. */
+    public static <T> CompletableFuture<T> async(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, LOADER);
+    }
+
+    public static void logTiming(String phase) {
+        long sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.printf("[startup] %-16s %5d ms%n", phase, sinceStart);
+    }
+}
@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo balancing. Plays many seeded games headless with a scripted Pacman for every
+ * combination of board size, ghost count, upgrade odds, Pacman policy and ghost policy, the
+ * scripts being plugged in as controllers, then prints per combination
+ * how long Pacman survived, how the scores spread and how often the board was cleared.
+ * Every game of every combination is its own task on the common fork/join pool, so all cores
+ * stay busy however the games are split between combinations. Game i of a combination is
+ * played with seed + i, so every combination plays the same mazes and the numbers come out
+ * the same on any number of cores.
+ *
+ * Usage: java Balance [--sizes small,21] [--ghosts 1,5,10] [--upgrade-chance 0.1,0.25]
+ *        [--upgrade-interval 5] [--policies greedy,cautious] [--ghost-policies chase,wander]
+ *        [--games 1000] [--seed 1] [--max-seconds 600] [--csv balance.csv]
+ */
+public class Balance {
+    private static final int CAUGHT = 0, CLEARED = 1, TIMED_OUT = 2;
+
+    /** How the scripted Pacman plays. */
+    enum Policy {
+        /** Never touches the keys, the baseline. */
+        IDLE,
+        /** A random open way at every cell, turning back only at dead ends. */
+        RANDOM,
+        /** Straight for the nearest pellet or upgrade. */
+        GREEDY,
+        /** The nearest pellet or upgrade not next to a ghost, greedy when there is none. */
+        CAUTIOUS
+    }
+
+    /** How the ghosts play. */
+    enum GhostPolicy {
+        /** The game's own chase. */
+        CHASE,
+        /** A random open way at every move, turning back only at dead ends. */
+        WANDER
+    }
+
+    private record Config(String size, int ghosts, float upgradeChance, int upgradeInterval, Policy policy,
+                          GhostPolicy ghostPolicy) {
+    }
+
+    // what each game ended with, indexed by config * games + game and written by one task each
+    private static final class Results {
+        final int[] ticks, scores, outcomes;
+        final float[] eaten; // share of the pellets at the start
+
+        Results(int games) {
+            ticks = new int[games];
+            scores = new int[games];
+            outcomes = new int[games];
+            eaten = new float[games];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] sizes = {"small"};
+        int[] ghosts = {5};
+        float[] chances = {0.25f};
+        int[] intervals = {5};
+        Policy[] policies = {Policy.GREEDY};
+        GhostPolicy[] ghostPolicies = {GhostPolicy.CHASE};
+        int games = 1000;
+        long seed = 1;
+        int maxSeconds = 600;
+        Path csv = null;
+        if (args.length % 2 != 0) {
+            usage();
+            return;
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes" -> sizes = value.split(",");
+                case "--ghosts" -> ghosts = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--upgrade-chance" -> chances = floats(value);
+                case "--upgrade-interval" -> intervals = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--policies" -> policies = Arrays.stream(value.split(","))
+                        .map(name -> Policy.valueOf(name.toUpperCase(Locale.ROOT))).toArray(Policy[]::new);
+                case "--ghost-policies" -> ghostPolicies = Arrays.stream(value.split(","))
+                        .map(name -> GhostPolicy.valueOf(name.toUpperCase(Locale.ROOT))).toArray(GhostPolicy[]::new);
+                case "--games" -> games = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--max-seconds" -> maxSeconds = Integer.parseInt(value);
+                case "--csv" -> csv = Paths.get(value);
+                default -> {
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        List<Config> configs = new ArrayList<>();
+        for (String size : sizes) {
+            GameState.sizeFor(size); // fail before hours of games rather than in the middle
+            for (int ghostCount : ghosts) {
+                for (float chance : chances) {
+                    for (int interval : intervals) {
+                        for (Policy policy : policies) {
+                            for (GhostPolicy ghostPolicy : ghostPolicies) {
+                                configs.add(new Config(size, ghostCount, chance, interval, policy, ghostPolicy));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        int perConfig = games;
+        long baseSeed = seed;
+        int maxTicks = (int) Math.min(Integer.MAX_VALUE, maxSeconds * 1000L / GameState.TICK_MILLIS);
+        Results results = new Results(configs.size() * perConfig);
+        long started = System.nanoTime();
+        IntStream.range(0, configs.size() * perConfig).parallel().forEach(task ->
+                play(configs.get(task / perConfig), baseSeed + task % perConfig, maxTicks, results, task));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long ticks = Arrays.stream(results.ticks).asLongStream().sum();
+        System.out.printf("%d games, %d ticks in %.1f s on %d cores (%.0f games/s, %.0f ticks/s)%n",
+                results.ticks.length, ticks, seconds, Runtime.getRuntime().availableProcessors(),
+                results.ticks.length / seconds, ticks / seconds);
+
+        String header = "size,ghosts,upgrade_chance,upgrade_interval,policy,ghost_policy,games,"
+                + "survival_mean_s,survival_p10_s,survival_p50_s,survival_p90_s,"
+                + "score_mean,score_p10,score_p50,score_p90,score_max,clear_rate,eaten_mean,timed_out";
+        System.out.printf("%-12s %6s %6s %4s %-8s %-6s %8s %8s %8s %8s %8s %8s %6s %6s%n", "size", "ghosts", "odds",
+                "int", "policy", "ghost", "surv p50", "surv p90", "score", "p10", "p50", "p90", "clear", "eaten");
+        List<String> rows = new ArrayList<>();
+        for (int c = 0; c < configs.size(); c++) {
+            Config config = configs.get(c);
+            int from = c * perConfig, to = from + perConfig;
+            int[] survival = Arrays.copyOfRange(results.ticks, from, to);
+            int[] scores = Arrays.copyOfRange(results.scores, from, to);
+            Arrays.sort(survival);
+            Arrays.sort(scores);
+            int cleared = 0, timedOut = 0;
+            double eaten = 0;
+            for (int i = from; i < to; i++) {
+                cleared += results.outcomes[i] == CLEARED ? 1 : 0;
+                timedOut += results.outcomes[i] == TIMED_OUT ? 1 : 0;
+                eaten += results.eaten[i];
+            }
+            double clearRate = (double) cleared / perConfig;
+            double eatenMean = eaten / perConfig;
+            System.out.printf("%-12s %6d %6.2f %4d %-8s %-6s %8.1f %8.1f %8.0f %8d %8d %8d %5.1f%% %5.1f%%%s%n",
+                    config.size(), config.ghosts(), config.upgradeChance(), config.upgradeInterval(),
+                    config.policy().name().toLowerCase(Locale.ROOT),
+                    config.ghostPolicy().name().toLowerCase(Locale.ROOT), seconds(percentile(survival, 0.5)),
+                    seconds(percentile(survival, 0.9)), mean(scores), percentile(scores, 0.1),
+                    percentile(scores, 0.5), percentile(scores, 0.9), clearRate * 100, eatenMean * 100,
+                    timedOut == 0 ? "" : "  " + timedOut + " timed out");
+            rows.add(String.format(Locale.ROOT, "%s,%d,%s,%d,%s,%s,%d,%.2f,%.2f,%.2f,%.2f,%.1f,%d,%d,%d,%d,%.4f,%.4f,%d",
+                    config.size(), config.ghosts(), config.upgradeChance(), config.upgradeInterval(),
+                    config.policy().name().toLowerCase(Locale.ROOT),
+                    config.ghostPolicy().name().toLowerCase(Locale.ROOT), perConfig, seconds(mean(survival)),
+                    seconds(percentile(survival, 0.1)), seconds(percentile(survival, 0.5)),
+                    seconds(percentile(survival, 0.9)), mean(scores), percentile(scores, 0.1),
+                    percentile(scores, 0.5), percentile(scores, 0.9), scores[scores.length - 1],
+                    clearRate, eatenMean, timedOut));
+        }
+        if (csv != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv))) {
+                out.println(header);
+                rows.forEach(out::println);
+            }
+            System.out.println("Written to " + csv);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java Balance [--sizes small,21] [--ghosts 1,5,10] [--upgrade-chance 0.1,0.25]");
+        System.out.println("       [--upgrade-interval 5] [--policies idle,random,greedy,cautious]");
+        System.out.println("       [--ghost-policies chase,wander] [--games 1000] [--seed 1] [--max-seconds 600]");
+        System.out.println("       [--csv balance.csv]");
+    }
+
+    // one whole game, as far as maxTicks
+    private static void play(Config config, long seed, int maxTicks, Results results, int slot) {
+        GameState state = new GameState(GameState.sizeFor(config.size()), config.ghosts(), seed);
+        state.setUpgradeOdds(config.upgradeChance(), config.upgradeInterval());
+        state.setPacmanController(new Pilot(config.policy(), state.getBoardSize(), seed));
+        if (config.ghostPolicy() == GhostPolicy.WANDER) {
+            state.setGhostController(new Wanderer(seed));
+        }
+        int pellets = state.getFoodLeft();
+        while (!state.isGameOver() && state.getTick() < maxTicks) {
+            state.step();
+        }
+        results.ticks[slot] = state.getTick();
+        results.scores[slot] = state.getScore();
+        results.outcomes[slot] = !state.isGameOver() ? TIMED_OUT : state.hasFood() ? CAUGHT : CLEARED;
+        results.eaten[slot] = pellets == 0 ? 1 : 1 - (float) state.getFoodLeft() / pellets;
+    }
+
+    private static float[] floats(String list) {
+        String[] parts = list.split(",");
+        float[] values = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Float.parseFloat(parts[i]);
+        }
+        return values;
+    }
+
+    // nearest rank on sorted values
+    private static int percentile(int[] sorted, double fraction) {
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private static double mean(int[] values) {
+        return Arrays.stream(values).asLongStream().sum() / (double) values.length;
+    }
+
+    private static double seconds(double ticks) {
+        return ticks * GameState.TICK_MILLIS / 1000.0;
+    }
+
+    /**
+     * The scripted Pacman of one game. Decides when Pacman reaches another cell, the cautious
+     * one every tick since the ghosts move while Pacman stands. Searches are breadth first over
+     * buffers kept for the whole game, so deciding allocates nothing.
+     */
+    private static final class Pilot implements PacmanController {
+        private final Policy policy;
+        private final Random random;
+        private final int size;
+        private final int[] queue;
+        private final int[] firstMove; // direction of the first step toward each reached cell
+        private final int[] seen;      // search generation that reached each cell
+        private int generation;
+        private int lastCell = -1;
+        private Observation view; // during decide only
+
+        Pilot(Policy policy, int size, long seed) {
+            this.policy = policy;
+            this.random = new Random(seed);
+            this.size = size;
+            int cells = policy == Policy.GREEDY || policy == Policy.CAUTIOUS ? size * size : 0;
+            queue = new int[cells];
+            firstMove = new int[cells];
+            seen = new int[cells];
+        }
+
+        @Override
+        public int decide(Observation observation) {
+            view = observation;
+            int x = observation.getPacmanX(), y = observation.getPacmanY();
+            int cell = x * size + y;
+            if (cell == lastCell && policy != Policy.CAUTIOUS) {
+                return GameState.NO_INPUT;
+            }
+            lastCell = cell;
+            return switch (policy) {
+                case IDLE -> GameState.NO_INPUT;
+                case RANDOM -> wander(observation, random, x, y, observation.getPacmanDirection());
+                case GREEDY -> nearestTarget(x, y, false);
+                case CAUTIOUS -> {
+                    int safe = nearestTarget(x, y, true);
+                    yield safe != GameState.NO_INPUT ? safe : nearestTarget(x, y, false);
+                }
+            };
+        }
+
+        // first step on a shortest way to a pellet or upgrade, NO_INPUT if none can be reached
+        private int nearestTarget(int fromX, int fromY, boolean avoidGhosts) {
+            generation++;
+            seen[fromX * size + fromY] = generation;
+            int head = 0, tail = 0;
+            for (int d = 0; d < 4; d++) {
+                int x = fromX + dx(d), y = fromY + dy(d);
+                if (passable(x, y, avoidGhosts) && seen[x * size + y] != generation) {
+                    seen[x * size + y] = generation;
+                    firstMove[x * size + y] = d;
+                    queue[tail++] = x * size + y;
+                }
+            }
+            while (head < tail) {
+                int cell = queue[head++];
+                int cx = cell / size, cy = cell % size;
+                if (view.isFood(cx, cy) || view.isUpgrade(cx, cy)) {
+                    return firstMove[cell];
+                }
+                for (int d = 0; d < 4; d++) {
+                    int x = cx + dx(d), y = cy + dy(d);
+                    if (passable(x, y, avoidGhosts) && seen[x * size + y] != generation) {
+                        seen[x * size + y] = generation;
+                        firstMove[x * size + y] = firstMove[cell];
+                        queue[tail++] = x * size + y;
+                    }
+                }
+            }
+            return GameState.NO_INPUT;
+        }
+
+        private boolean passable(int x, int y, boolean avoidGhosts) {
+            if (view.isWall(x, y)) {
+                return false;
+            }
+            if (!avoidGhosts) {
+                return true;
+            }
+            if (view.isGhost(x, y)) {
+                return false;
+            }
+            for (int d = 0; d < 4; d++) {
+                int nx = x + dx(d), ny = y + dy(d);
+                if (!view.isWall(nx, ny) && view.isGhost(nx, ny)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // ghosts that wander at random instead of chasing, one per game for all its ghosts
+    private static final class Wanderer implements GhostController {
+        private final Random random;
+
+        Wanderer(long seed) {
+            random = new Random(~seed);
+        }
+
+        @Override
+        public int decide(int ghost, Observation observation) {
+            return wander(observation, random, observation.ghostX()[ghost], observation.ghostY()[ghost],
+                    observation.ghostDirection()[ghost]);
+        }
+    }
+
+    // a random open way out of (x, y) other than back where it came from, back only at a dead end
+    private static int wander(Observation observation, Random random, int x, int y, int direction) {
+        int back = direction ^ 1; // LEFT and RIGHT, UP and DOWN differ in the last bit
+        int choices = 0, chosen = back;
+        for (int d = 0; d < 4; d++) {
+            if (d != back && !observation.isWall(x + dx(d), y + dy(d)) && random.nextInt(++choices) == 0) {
+                chosen = d;
+            }
+        }
+        return chosen;
+    }
+
+    // the way Pacman and the ghosts step, UP and DOWN change the row and LEFT and RIGHT the column
+    private static int dx(int direction) {
+        return direction == GameState.UP ? -1 : direction == GameState.DOWN ? 1 : 0;
+    }
+
+    private static int dy(int direction) {
+        return direction == GameState.LEFT ? -1 : direction == GameState.RIGHT ? 1 : 0;
+    }
+}
@@ -0,0 +1,206 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One layer of the maze (walls, food, ...) packed as bits, 64 cells per long.
+ * Cell (x, y) is bit x * columns + y. The number of set cells is kept up to date
+ * on every change, so asking how many are left is O(1).
+ *
+ * The last JOURNAL_SIZE words that changed are kept in a ring, so a copy that was
+ * brought up to date before can catch up by copying just those, see copyChangesTo.
+ */
+public class BitGrid {
+    static final int JOURNAL_SIZE = 1024; // a power of two
+
+    private final int rows;
+    private final int columns;
+    private final long[] words;
+    private int count;
+    private final int[] journal = new int[JOURNAL_SIZE]; // word of change n at n % JOURNAL_SIZE
+    private long changes;     // single word changes and whole layer changes made so far
+    private long wholeChange; // changes right after every word was last replaced at once
+
+    public BitGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.words = new long[(rows * columns + 63) >>> 6];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public boolean get(int x, int y) {
+        int bit = x * columns + y;
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /** Reads a cell of a layer copied out with copyTo. */
+    public static boolean get(long[] words, int columns, int x, int y) {
+        int bit = x * columns + y;
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public void set(int x, int y) {
+        int bit = x * columns + y;
+        long mask = 1L << bit;
+        long word = words[bit >>> 6];
+        if ((word & mask) == 0) {
+            words[bit >>> 6] = word | mask;
+            count++;
+            changed(bit >>> 6);
+        }
+    }
+
+    public void clear(int x, int y) {
+        int bit = x * columns + y;
+        long mask = 1L << bit;
+        long word = words[bit >>> 6];
+        if ((word & mask) != 0) {
+            words[bit >>> 6] = word & ~mask;
+            count--;
+            changed(bit >>> 6);
+        }
+    }
+
+    private void changed(int word) {
+        journal[(int) changes & (JOURNAL_SIZE - 1)] = word;
+        changes++;
+    }
+
+    private void changedAll() {
+        wholeChange = ++changes;
+    }
+
+    /** Number of set cells in the whole layer. */
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Number of set cells in the rectangle of rows x0..x1 and columns y0..y1, bounds inclusive. */
+    public int count(int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, rows - 1);
+        y1 = Math.min(y1, columns - 1);
+        int total = 0;
+        for (int x = x0; x <= x1 && y0 <= y1; x++) {
+            total += countBits(x * columns + y0, x * columns + y1);
+        }
+        return total;
+    }
+
+    // set bits between two bit indexes, both inclusive, a word at a time
+    private int countBits(int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+        int total = Long.bitCount(words[firstWord] & firstMask);
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            total += Long.bitCount(words[w]);
+        }
+        return total + Long.bitCount(words[lastWord] & lastMask);
+    }
+
+    /** Copies the packed cells into dest, which must hold at least as many words. */
+    public void copyTo(long[] dest) {
+        System.arraycopy(words, 0, dest, 0, words.length);
+    }
+
+    /**
+     * Brings dest, a copy of this layer as of version since, up to date and returns its new
+     * version. Pass -1 for a copy never made. Only the words changed in between are copied,
+     * unless the journal no longer holds all of them, then the whole layer is.
+     */
+    public long copyChangesTo(long[] dest, long since) {
+        if (since < wholeChange || changes - since > JOURNAL_SIZE) {
+            copyTo(dest);
+        } else {
+            for (long n = since; n < changes; n++) {
+                int w = journal[(int) n & (JOURNAL_SIZE - 1)];
+                dest[w] = words[w];
+            }
+        }
+        return changes;
+    }
+
+    /** Index (x * columns + y) of the first set cell at or after bit from, or -1 if there is none. */
+    public int nextSet(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public void writeTo(ByteBuffer out) {
+        for (long word : words) {
+            out.putLong(word);
+        }
+    }
+
+    /** Replaces every cell with the words written by writeTo. */
+    public void readFrom(ByteBuffer in) {
+        for (int w = 0; w < words.length; w++) {
+            words[w] = in.getLong();
+        }
+        recount();
+        changedAll();
+    }
+
+    /** Replaces every cell with packed words laid out like copyTo writes them. */
+    public void copyFrom(long[] src) {
+        System.arraycopy(src, 0, words, 0, words.length);
+        recount();
+        changedAll();
+    }
+
+    /** Sets exactly the cells that are clear in other, which must have the same dimensions. */
+    public void setInverseOf(BitGrid other) {
+        for (int w = 0; w < words.length; w++) {
+            words[w] = ~other.words[w];
+        }
+        int used = (rows * columns) & 63;
+        if (used != 0) {
+            words[words.length - 1] &= -1L >>> (64 - used); // no cells past the end
+        }
+        recount();
+        changedAll();
+    }
+
+    private void recount() {
+        count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+    }
+
+    public int wordCount() {
+        return words.length;
+    }
+
+    public void clearAll() {
+        Arrays.fill(words, 0L);
+        count = 0;
+        changedAll();
+    }
+}
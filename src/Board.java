@@ -1,48 +1,75 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
 
-public class Board extends JPanel implements Serializable, Runnable {
+/**
+ * Swing view over a GameState. It forwards key presses to the simulation,
+ * paints the state through the Playfield and shows the game over dialogs.
+ */
+public class Board extends JPanel implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    private int size;
-    private boolean[][] walls;
-    private boolean[][] food;
-    private List<Upgrade> upgrades;
-    private List<Ghost> ghosts;
-    private final Pacman pacman;
-    private final HighScoreManager highScoreManager;
-    private int lifeCounter;
-    private int timeCounter;
-    private final JPanel[][] cells;
+    // the window shows at most this many pixels of the maze in each direction
+    public static final int VIEWPORT_PIXELS = 800;
+    private static final int MIN_CELL_SIZE = 24;
+    private static final int DEFAULT_REFRESH_HZ = 60;
+
+    private final int size;
+    private final GameState state;
+    private final Playfield playfield;
+    private final FrameBuffer frames;
     private final int cellSize;
-    private final Random random;
 
     private final JLabel scoreLabel;
     private final JLabel livesLabel;
     private final JLabel timeLabel;
 
     private final JFrame parentFrame; // Reference to the parent frame
-    private ImageIcon upgradeIcon;
+    private final BufferedImage upgradeImage;
+    private final BufferedImage[][] pacmanImages; // indexed by direction, then 0: open, 1: closed
+    private final BufferedImage[] ghostImages;
+
+    // what the info bar shows, the labels are only touched when a value changes (EDT only)
+    private int shownScore = -1, shownLives = -1, shownTime = -1;
+
+    // directions pressed on the EDT, drained by the game loop every tick
+    private final InputQueue inputs = new InputQueue();
+    private final int[] pressed = new int[InputQueue.CAPACITY]; // loop thread only, the directions of one tick
+    private long inputNanos; // loop thread only, oldest press not published in a frame yet
 
-    private final Thread boardThread;
+    private final GameSession session; // ticks while the board is on screen, stopped for good when it leaves
+    private final Timer frameTimer; // runs while the board is on screen
+    private final ReplayRecorder replay; // null when the replay file could not be created
+    private final GameMetrics metrics = new GameMetrics();
+    private volatile boolean statsShown;
+    private long allocatedBefore = -1; // loop thread allocation counter at the start of the last tick
 
     public Board(String sizeType, JFrame parentFrame) {
+        this(new GameState(GameState.sizeFor(sizeType)), parentFrame);
+    }
+
+    /** Board carrying on with a game that is already under way, such as a resumed save. */
+    public Board(GameState state, JFrame parentFrame) {
         this.parentFrame = parentFrame;
-        setSize(sizeType);
+        this.state = state;
+        size = state.getBoardSize();
         setLayout(new BorderLayout());
 
-        cellSize = Math.min(800 / size, 800 / size);
-        JPanel gamePanel = new JPanel(new GridLayout(size, size));
-        gamePanel.setPreferredSize(new Dimension(cellSize * size, cellSize * size));
-        add(gamePanel, BorderLayout.CENTER);
+        cellSize = cellSizeFor(size);
+        state.setMetrics(metrics);
+        replay = ReplayRecorder.open(state);
+        frames = new FrameBuffer(size, state.getGhosts().size());
+        playfield = new Playfield(this, frames, size, cellSize);
+        add(playfield, BorderLayout.CENTER);
+        // One session drives both the ghosts and Pacman, from addNotify on
+        session = new GameSession(this::tick, this::updateBoard, this::release);
 
-        JPanel infoPanel = new JPanel(new GridLayout(1, 4));
+        JPanel infoPanel = new JPanel(new GridLayout(1, 7));
         scoreLabel = new JLabel("Score: 0");
         livesLabel = new JLabel("Lives: 3");
         timeLabel = new JLabel("Time: 0");
@@ -50,34 +77,101 @@ public class Board extends JPanel implements Serializable, Runnable {
         infoPanel.add(livesLabel);
         infoPanel.add(timeLabel);
 
+        JToggleButton statsButton = new JToggleButton("Stats");
+        statsButton.setFont(new Font("Arial", Font.BOLD, 18));
+        statsButton.setFocusable(false);
+        statsButton.addActionListener(e -> {
+            statsShown = statsButton.isSelected();
+            playfield.repaint();
+        });
+        infoPanel.add(statsButton);
+
+        JToggleButton pauseButton = new JToggleButton("Pause");
+        pauseButton.setFont(new Font("Arial", Font.BOLD, 18));
+        pauseButton.setFocusable(false);
+        pauseButton.addActionListener(e -> {
+            if (pauseButton.isSelected()) {
+                session.pause();
+            } else {
+                inputs.clear(); // keys pressed while paused are dropped, no tick is running to race with
+                session.resume();
+            }
+        });
+        infoPanel.add(pauseButton);
+
+        JButton suspendButton = createStyledButton("Suspend");
+        suspendButton.addActionListener(e -> {
+            session.pause();
+            if (session.getState() == GameSession.State.PAUSED) {
+                suspend();
+            }
+        });
+        infoPanel.add(suspendButton);
+
         JButton backButton = createStyledButton("Back");
         backButton.addActionListener(e -> exitGame());
         infoPanel.add(backButton);
 
         add(infoPanel, BorderLayout.NORTH);
 
-        cells = new JPanel[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                cells[i][j] = new JPanel(new BorderLayout());
-                cells[i][j].setBackground(Color.BLACK);
-                gamePanel.add(cells[i][j]);
-            }
+        // Sprites come scaled from the shared cache, the model classes only know sprite indexes
+        upgradeImage = loadImage("cherry.png");
+        pacmanImages = new BufferedImage[4][2];
+        pacmanImages[GameState.UP][0] = loadImage("pacman_up.png");
+        pacmanImages[GameState.UP][1] = loadImage("pacman_up_closed.png");
+        pacmanImages[GameState.DOWN][0] = loadImage("pacman_down.png");
+        pacmanImages[GameState.DOWN][1] = loadImage("pacman_down_closed.png");
+        pacmanImages[GameState.LEFT][0] = loadImage("pacman_left.png");
+        pacmanImages[GameState.LEFT][1] = loadImage("pacman_left_closed.png");
+        pacmanImages[GameState.RIGHT][0] = loadImage("pacman_right.png");
+        pacmanImages[GameState.RIGHT][1] = loadImage("pacman_right_closed.png");
+        ghostImages = new BufferedImage[GameState.GHOST_SPRITES];
+        for (int i = 0; i < ghostImages.length; i++) {
+            ghostImages[i] = loadImage("ghost" + i + ".png");
         }
 
-        random = new Random();
-        initializeBoard();
-        pacman = new Pacman(this); // Create the Pacman instance and pass the Board to it
-        highScoreManager = new HighScoreManager(); // Initialize the high score manager
         updateBoard();
 
-        // Load the upgrade image icon
-        upgradeIcon = new ImageIcon(getClass().getClassLoader().getResource("images/cherry.png"));
-        upgradeIcon = new ImageIcon(upgradeIcon.getImage().getScaledInstance(cellSize, cellSize, Image.SCALE_SMOOTH));
+        // bound for the whole window, so the keys work whichever component has the focus
+        bindDirection(KeyEvent.VK_LEFT, GameState.LEFT);
+        bindDirection(KeyEvent.VK_RIGHT, GameState.RIGHT);
+        bindDirection(KeyEvent.VK_UP, GameState.UP);
+        bindDirection(KeyEvent.VK_DOWN, GameState.DOWN);
 
-        // Start the game thread
-        boardThread = new Thread(this);
-        boardThread.start();
+        // the loop thread only publishes frames, the EDT repaints once per display refresh and
+        // the playfield slides the entities between ticks, so motion is smooth at any tick rate
+        frameTimer = new Timer(1000 / refreshRate(), e -> playfield.repaint());
+    }
+
+    // refresh rate of the screen in Hz, DEFAULT_REFRESH_HZ when there is none or it won't say
+    private static int refreshRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_REFRESH_HZ;
+        }
+        int hz = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return hz == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_HZ : Math.min(hz, 1000);
+    }
+
+    // pixels per cell so the whole board fits the window, bigger boards scroll instead of shrinking further
+    public static int cellSizeFor(int size) {
+        return Math.max(MIN_CELL_SIZE, VIEWPORT_PIXELS / size);
+    }
+
+    private void bindDirection(int key, int direction) {
+        String name = "direction-" + direction;
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // back-date by the time the event spent in the AWT queue
+                long queued = Math.max(0, System.currentTimeMillis() - e.getWhen());
+                inputs.offer(direction, System.nanoTime() - queued * 1_000_000L);
+            }
+        });
+    }
+
+    private BufferedImage loadImage(String name) {
+        return SpriteCache.get(name, cellSize);
     }
 
     private JButton createStyledButton(String text) {
@@ -93,279 +187,152 @@ public class Board extends JPanel implements Serializable, Runnable {
         return button;
     }
 
-    private void setSize(String sizeType) {
-        switch (sizeType.toLowerCase()) {
-            case "small":
-                this.size = 15;
-                break;
-            case "medium":
-                this.size = 18;
-                break;
-            case "large":
-                this.size = 21;
-                break;
-            case "extra-large":
-                this.size = 23;
-                break;
-            case "huge":
-                this.size = 26;
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid board size type");
+    // runs on the EDT once the simulation reports the game is over
+    private void gameOver() {
+        int score = state.getScore();
+        String name = JOptionPane.showInputDialog(this, "Game Over! Your score: " + score + "\nEnter your name:");
+        if (name != null && !name.isEmpty()) {
+            HighScoreManager.getInstance().addHighScore(name, score, size);
         }
+        displayHighScores();
+        exitGame();
     }
 
-    private void initializeBoard() {
-        walls = new boolean[size][size];
-        food = new boolean[size][size];
-        upgrades = new ArrayList<>();
-        ghosts = new ArrayList<>();
-        lifeCounter = 3;
-        timeCounter = 0;
-
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                //simple maze structure with an easy nested for loops
-                if (i == 0 || i == size - 1 || j == 0 || j == size - 1) {
-                    walls[i][j] = true; // Outer boundary
-                } else if (size > 4 && (i % 2 == 0 && j % 2 == 0)) {
-                    walls[i][j] = true;
-                } else {
-                    food[i][j] = true;
-                }
-            }
-        }
-
-        upgrades.add(new Upgrade(size / 2, size / 2, "speed"));
+    // only the table of this board size, scores on other sizes don't compare
+    private void displayHighScores() {
+        JPanel highScorePanel = Menu.createHighScorePanel(HighScoreManager.getInstance().getHighScores(size));
+        JOptionPane.showMessageDialog(this, highScorePanel, "High Scores", JOptionPane.INFORMATION_MESSAGE);
+    }
 
-        for (int i = 0; i < 5; i++) { // Create 5 ghosts with different images
-            int x, y;
-            do {
-                x = random.nextInt(size);
-                y = random.nextInt(size);
-            } while (walls[x][y]); // ensuring ghosts are not placed on walls
+    public int getBoardSize() {
+        return size;
+    }
 
-            Ghost ghost = new Ghost(x, y, this, i);
-            ghosts.add(ghost);
-        }
+    public int getCellSize() {
+        return cellSize;
     }
 
-    public boolean isWall(int x, int y) {
-        if (x < 0 || y < 0 || x >= size || y >= size) {
-            return true; // treatin outoufbounds
-        }
-        return walls[x][y];
+    public GameMetrics getMetrics() {
+        return metrics;
     }
 
-    public boolean isFood(int x, int y) {
-        return food[x][y];
+    boolean isStatsShown() {
+        return statsShown;
     }
 
-    public void removeFood(int x, int y) {
-        food[x][y] = false;
+    public GameState getState() {
+        return state;
     }
 
-    public boolean isUpgrade(int x, int y) {
-        for (Upgrade upgrade : upgrades) {
-            if (upgrade.getX() == x && upgrade.getY() == y) {
-                return true;
-            }
-        }
-        return false;
+    public BufferedImage getUpgradeImage() {
+        return upgradeImage;
     }
 
-    public void removeUpgrade(int x, int y) {
-        upgrades.removeIf(upgrade -> upgrade.getX() == x && upgrade.getY() == y);
+    public BufferedImage getPacmanImage(int direction, boolean mouthOpen) {
+        return pacmanImages[direction][mouthOpen ? 0 : 1];
     }
 
-    public void applyUpgrade(Pacman pacman) {
-        for (Upgrade upgrade : upgrades) {
-            if (upgrade.getX() == pacman.getX() && upgrade.getY() == pacman.getY()) {
-                upgrade.applyTo(pacman);
-                removeUpgrade(upgrade.getX(), upgrade.getY());
-                break;
-            }
-        }
+    public BufferedImage getGhostImage(int sprite) {
+        return ghostImages[sprite];
     }
 
-    public boolean isGhost(int x, int y) {
-        for (Ghost ghost : ghosts) {
-            if (ghost.getX() == x && ghost.getY() == y) {
-                return true;
+    // one fixed logic step, called from the game loop thread only
+    private void tick() {
+        int count = inputs.drain(pressed);
+        if (count > 0 && inputNanos == 0) {
+            inputNanos = inputs.getDrainedSince();
+        }
+        if (replay != null) {
+            for (int i = 0; i < count; i++) {
+                replay.record(state.getTick(), pressed[i]);
             }
         }
-        return false;
-    }
-
-    public void moveGhosts() {
-        for (Ghost ghost : ghosts) {
-            ghost.chasePacman(pacman.getX(), pacman.getY());
+        state.step(pressed, count);
+        if (replay != null) {
+            replay.stepped(state);
         }
-    }
-
-    public void incrementLives() {
-        lifeCounter++;
-        livesLabel.setText("Lives: " + lifeCounter);
-    }
-
-    private void generateUpgrade() {
-        if (random.nextFloat() < 0.25) { // 25% chance to get a random upgrade out of 5 upgrade
-            int x, y;
-            do {
-                x = random.nextInt(size);
-                y = random.nextInt(size);
-            } while (isWall(x, y) || isFood(x, y) || isUpgrade(x, y) || isGhost(x, y) || (x == pacman.getX() && y == pacman.getY()));
-
-            String[] upgradeTypes = {"speed", "extraLife", "slowDownGhosts", "invincibility", "doubleScore"};
-            String type = upgradeTypes[random.nextInt(upgradeTypes.length)];
-            upgrades.add(new Upgrade(x, y, type));
+        // everything the loop thread allocated since the last tick started, render included
+        long allocated = GameMetrics.allocatedBytes();
+        metrics.tickDone(state, allocatedBefore >= 0 && allocated >= 0 ? allocated - allocatedBefore : -1);
+        allocatedBefore = allocated;
+        metrics.setOverruns(session.getOverruns());
+        if (state.isGameOver()) {
+            session.stop();
+            metrics.exportCsvInBackground(size);
+            updateBoard();
+            SwingUtilities.invokeLater(this::gameOver);
         }
     }
 
-    public void gameOver() {
-        boardThread.interrupt();
-        int score = pacman != null ? pacman.getScore() : 0;
-        String name = JOptionPane.showInputDialog(this, "Game Over! Your score: " + score + "\nEnter your name:");
-        if (name != null && !name.isEmpty()) {
-            highScoreManager.addHighScore(name, score);
-        }
-        displayHighScores();
-        System.exit(0);
+    // copies the paused game, the file is written in the background and then we leave, EDT only
+    private void suspend() {
+        SaveGame.save(state).whenComplete((done, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Could not save the game: " + error.getMessage());
+            }
+            exitGame();
+        }));
     }
 
-    private void displayHighScores() {
-        List<HighScore> highScores = highScoreManager.getHighScores();
-        String[] highScoreArray = highScores.stream().map(HighScore::toString).toArray(String[]::new);
-
-        // JList for high scores
-        JList<String> highScoreList = new JList<>(highScoreArray);
-        highScoreList.setFont(new Font("Arial", Font.BOLD, 16));
-        highScoreList.setForeground(Color.WHITE);
-        highScoreList.setBackground(Color.BLACK);
-
-        JLabel titleLabel = new JLabel("High Scores");
-        titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
-        titleLabel.setForeground(Color.YELLOW);
-        titleLabel.setHorizontalAlignment(JLabel.CENTER);
-
-        JPanel highScorePanel = new JPanel(new BorderLayout());
-        highScorePanel.setBackground(Color.BLACK);
-        highScorePanel.add(titleLabel, BorderLayout.NORTH);
-        highScorePanel.add(new JScrollPane(highScoreList), BorderLayout.CENTER);
-
-        JOptionPane.showMessageDialog(this, highScorePanel, "High Scores", JOptionPane.INFORMATION_MESSAGE);
-    }
-    public int getBoardSize() {
-        return size;
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        frameTimer.start();
+        if (session.getState() == GameSession.State.NEW) {
+            session.start();
+        }
     }
 
-    public int getCellSize() {
-        return cellSize;
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        frameTimer.stop();
+        session.stop(); // however the board went away, its game does not go on in the background
     }
 
-    public boolean hasFood() {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (food[i][j]) {
-                    return true;
-                }
-            }
+    // run once by the session when it stops, on the thread that stopped it
+    private void release() {
+        if (replay != null) {
+            replay.close(state);
+        }
+        Throwable failure = session.getFailure();
+        if (failure != null) {
+            SwingUtilities.invokeLater(() -> {
+                JOptionPane.showMessageDialog(this, "The game stopped because of an error: " + failure);
+                exitGame();
+            });
         }
-        return false;
     }
 
+    // publishes the state of this tick for the EDT to pick up, called from the game loop thread only
     protected void updateBoard() {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                cells[i][j].removeAll();
-                cells[i][j].revalidate();
-                if (walls[i][j]) {
-                    cells[i][j].setBackground(Color.BLUE);
-                } else if (food[i][j]) {
-                    cells[i][j].setBackground(Color.BLACK); // Set cell color to black and draw food
-                    JLabel foodLabel = new JLabel(".", SwingConstants.CENTER);
-                    foodLabel.setForeground(Color.WHITE);
-                    cells[i][j].add(foodLabel, BorderLayout.CENTER);
-                } else {
-                    cells[i][j].setBackground(Color.BLACK);
-                }
-            }
-        }
-
-        for (Upgrade upgrade : upgrades) {
-            cells[upgrade.getX()][upgrade.getY()].removeAll();
-            JLabel upgradeLabel = new JLabel(upgradeIcon, SwingConstants.CENTER);
-            upgradeLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            upgradeLabel.setVerticalAlignment(SwingConstants.CENTER);
-            cells[upgrade.getX()][upgrade.getY()].add(upgradeLabel, BorderLayout.CENTER);
-        }
+        long started = System.nanoTime();
+        frames.publish(state, inputNanos);
+        inputNanos = 0;
+        metrics.record(GameMetrics.RENDER, System.nanoTime() - started);
+    }
 
-        if (pacman != null) {
-            cells[pacman.getX()][pacman.getY()].setBackground(Color.BLACK); // Set background to black
-            JLabel pacmanLabel = new JLabel(pacman.getCurrentImage(), SwingConstants.CENTER);
-            pacmanLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            pacmanLabel.setVerticalAlignment(SwingConstants.CENTER);
-            cells[pacman.getX()][pacman.getY()].add(pacmanLabel, BorderLayout.CENTER);
+    // updating the upper info bar from the snapshot being painted, EDT only
+    void showHud(FrameSnapshot snapshot) {
+        if (snapshot.getScore() != shownScore) {
+            shownScore = snapshot.getScore();
+            scoreLabel.setText("Score: " + shownScore);
         }
-
-        // Ensure multiple ghosts can occupy and be rendered in the same cell
-        for (Ghost ghost : ghosts) {
-            int ghostX = ghost.getX();
-            int ghostY = ghost.getY();
-            JLabel ghostLabel = new JLabel(ghost.getGhostImage(), SwingConstants.CENTER);
-            ghostLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            ghostLabel.setVerticalAlignment(SwingConstants.CENTER);
-            cells[ghostX][ghostY].add(ghostLabel, BorderLayout.CENTER);
-
-            if (pacman != null && pacman.getX() == ghostX && pacman.getY() == ghostY) {
-                if (!pacman.hasInvincibilityUpgrade()) {
-                    pacman.resetUpgrades(); // Clear all upgrades
-                    lifeCounter--;
-                    if (lifeCounter <= 0) {
-                        gameOver();
-                    } else {
-                        pacman.resetPosition();
-                    }
-                }
-            }
+        if (snapshot.getLives() != shownLives) {
+            shownLives = snapshot.getLives();
+            livesLabel.setText("Lives: " + shownLives);
         }
-
-        // updating the upper info bar
-        if (pacman != null) {
-            scoreLabel.setText("Score: " + pacman.getScore());
-            livesLabel.setText("Lives: " + lifeCounter);
-            timeLabel.setText("Time: " + timeCounter);
+        if (snapshot.getTime() != shownTime) {
+            shownTime = snapshot.getTime();
+            timeLabel.setText("Time: " + shownTime);
         }
-
-        revalidate();
-        repaint();
     }
 
     private void exitGame() {
-        boardThread.interrupt();
+        session.stop();
         parentFrame.getContentPane().removeAll();
         parentFrame.add(new Menu(parentFrame));
         parentFrame.revalidate();
         parentFrame.repaint();
     }
-
-    @Override
-    public void run() {
-        while (!boardThread.isInterrupted()) {
-            try {
-                Thread.sleep(200);
-                timeCounter++;
-                if (timeCounter % 5 == 0) {
-                    generateUpgrade();
-                }
-                moveGhosts();
-                updateBoard();
-                if (!hasFood()) {
-                    gameOver();
-                }
-            } catch (InterruptedException e) {
-                boardThread.interrupt();
-            }
-        }
-    }
 }
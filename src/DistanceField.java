@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Breadth-first distances from Pacman's cell, shared by every ghost, so a ghost's
+ * move is a lookup over its four neighbors.
+ *
+ * This is a plain breadth-first search with an early exit, not an incremental field:
+ * whenever Pacman moves it starts over from his new cell, and it stops once every cell
+ * holding a ghost has been found. A ghost at distance d only needs a neighbor at d - 1,
+ * which is always found before d, so the cells farther out never matter. A search costs
+ * the area within the farthest ghost's distance, on a big maze with one distant ghost
+ * that is most of the board.
+ *
+ * While Pacman stays put the distances stay valid and the search is only picked up
+ * where it stopped for ghosts that moved beyond it, as steered ghosts and ghosts sent
+ * home can.
+ */
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int rows;
+    private final int columns;
+    private final int[] distance;
+    // a cell's distance is only valid when its stamp matches the current generation,
+    // that way nothing has to be cleared between searches
+    private final int[] stamp;
+    private final int[] queue;
+    private int generation;
+    private int sourceX = -1, sourceY = -1;
+    // the search in progress, queue[head..tail) are found but not yet expanded
+    private int head, tail;
+
+    public DistanceField(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.distance = new int[rows * columns];
+        this.stamp = new int[rows * columns];
+        this.queue = new int[rows * columns];
+    }
+
+    /**
+     * Makes the distances from (x, y) cover every ghost's cell: a new search if Pacman
+     * moved since the last call, otherwise the last one carried on as far as needed.
+     */
+    public void update(BitGrid walls, GhostSwarm ghosts, int x, int y) {
+        if (x != sourceX || y != sourceY) {
+            sourceX = x;
+            sourceY = y;
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            head = 0;
+            tail = 0;
+            visit(walls, x, y, 0);
+        }
+        // ghosts in a sealed part of the maze empty the queue once, after that this is a scan
+        for (int i = 0, n = ghosts.size(); i < n; i++) {
+            int cell = ghosts.getX(i) * columns + ghosts.getY(i);
+            while (stamp[cell] != generation && head < tail) {
+                expand(walls, queue[head++]);
+            }
+        }
+    }
+
+    private void expand(BitGrid walls, int cell) {
+        int cx = cell / columns;
+        int cy = cell - cx * columns;
+        int next = distance[cell] + 1;
+        visit(walls, cx - 1, cy, next);
+        visit(walls, cx + 1, cy, next);
+        visit(walls, cx, cy - 1, next);
+        visit(walls, cx, cy + 1, next);
+    }
+
+    private void visit(BitGrid walls, int x, int y, int d) {
+        if (x < 0 || y < 0 || x >= rows || y >= columns || walls.get(x, y)) {
+            return;
+        }
+        int cell = x * columns + y;
+        if (stamp[cell] == generation) {
+            return;
+        }
+        stamp[cell] = generation;
+        distance[cell] = d;
+        queue[tail++] = cell;
+    }
+
+    /** Forgets the last source, the next update searches again. Needed after the walls or Pacman were restored from a save. */
+    public void invalidate() {
+        sourceX = -1;
+        sourceY = -1;
+    }
+
+    /** Distance to Pacman, or UNREACHABLE for walls, sealed cells and cells the last search did not need. */
+    public int distanceAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= rows || y >= columns) {
+            return UNREACHABLE;
+        }
+        int cell = x * columns + y;
+        return stamp[cell] == generation ? distance[cell] : UNREACHABLE;
+    }
+}
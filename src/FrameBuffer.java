@@ -0,0 +1,62 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free triple buffer of FrameSnapshots between the game loop and the EDT.
+ * The loop owns the back snapshot and the EDT the front one. Publishing swaps
+ * the back into the middle slot, and the EDT swaps the middle with its front
+ * when a newer one is there. Neither side ever waits for the other, and the
+ * EDT always paints the newest complete frame.
+ */
+public class FrameBuffer {
+    private static final int FRESH = 4; // set on the middle slot when it holds an unread frame
+
+    private final FrameSnapshot[] frames;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;  // loop thread only
+    private int front = 2; // EDT only
+    private int last = -1; // loop thread only, the snapshot published most recently
+    private long unshownInput; // loop thread only, press on frames the EDT has not taken yet
+
+    public FrameBuffer(int size, int ghosts) {
+        frames = new FrameSnapshot[]{new FrameSnapshot(size, ghosts), new FrameSnapshot(size, ghosts),
+                new FrameSnapshot(size, ghosts)};
+    }
+
+    /** Copies the state into the back snapshot and makes it the newest frame. Loop thread only. */
+    public void publish(GameState state) {
+        publish(state, 0);
+    }
+
+    /**
+     * Publishes a frame that answers input pressed at inputNanos, 0 if none. The press stays
+     * on every following frame until the EDT has taken one of them, so it is not lost when
+     * the EDT skips a frame. The EDT may see the same press on two frames in a row.
+     */
+    public void publish(GameState state, long inputNanos) {
+        if ((middle.get() & FRESH) == 0) {
+            unshownInput = 0; // the EDT took the last frame and the press with it
+        }
+        if (unshownInput == 0) {
+            unshownInput = inputNanos;
+        }
+        FrameSnapshot frame = frames[back];
+        // the EDT only reads snapshots, so the loop may still read the one it published last
+        frame.copyFrom(state, last >= 0 ? frames[last] : null);
+        frame.setInputNanos(unshownInput);
+        last = back;
+        back = middle.getAndSet(back | FRESH) & 3;
+    }
+
+    /** True if a frame newer than the current front has been published. */
+    public boolean hasNewFrame() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /** Takes the newest published frame if there is one, and returns the front frame. EDT only. */
+    public FrameSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return frames[front];
+    }
+}
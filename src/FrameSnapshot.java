@@ -0,0 +1,242 @@
+/**
+ * Everything the renderer needs to draw one tick: grid layers, entity positions,
+ * score, lives and time. The simulation fills a snapshot and publishes it through
+ * a FrameBuffer, after that it is only read, by the EDT, until it is handed back.
+ * Snapshots are reused from tick to tick, so filling one does not allocate.
+ *
+ * Entities move a whole cell at a time, every few ticks. For drawing in between, each
+ * one also carries the cell it came from, the tick it moved on and how many ticks its
+ * move takes, found by comparing with the previously published snapshot. The renderer
+ * slides it from one cell to the other over that many ticks, so on screen it trails
+ * the simulation by up to one move and never stops between cells while it keeps going.
+ *
+ * Walls are the maze's own words, shared by all snapshots. Food and upgrades are copied
+ * a word at a time, only the words that changed since this snapshot was last filled.
+ */
+public class FrameSnapshot {
+    private final int size;
+    private long[] walls;
+    private final long[] food;
+    private final long[] upgrades;
+    private GameState source; // state the layers were last copied from, and as of which versions
+    private long foodVersion = -1, upgradeVersion = -1;
+    private int pacmanX, pacmanY;
+    private int pacmanFromX, pacmanFromY, pacmanMovedAt, pacmanMoveTicks;
+    private int pacmanDirection;
+    private int ghostCount;
+    private final int[] ghostX;
+    private final int[] ghostY;
+    private final int[] ghostFromX;
+    private final int[] ghostFromY;
+    private final int[] ghostMovedAt;
+    private final int[] ghostMoveTicks;
+    private final int[] ghostSprite;
+    private int score;
+    private int lives;
+    private int time;
+    private int tick;
+    private boolean gameOver;
+    private long inputNanos; // press time of the oldest input this frame is the first to show, 0 if none
+    private long publishedNanos;
+
+    public FrameSnapshot(int size, int ghosts) {
+        this.size = size;
+        int words = (size * size + 63) >>> 6;
+        this.food = new long[words];
+        this.upgrades = new long[words];
+        this.ghostX = new int[ghosts];
+        this.ghostY = new int[ghosts];
+        this.ghostFromX = new int[ghosts];
+        this.ghostFromY = new int[ghosts];
+        this.ghostMovedAt = new int[ghosts];
+        this.ghostMoveTicks = new int[ghosts];
+        this.ghostSprite = new int[ghosts];
+    }
+
+    /**
+     * Copies the current state in, called on the simulation thread only. Moves are found
+     * against previous, the snapshot published before this one, or null for the first.
+     */
+    public void copyFrom(GameState state, FrameSnapshot previous) {
+        if (state != source) {
+            source = state;
+            walls = state.wallWords();
+            foodVersion = -1;
+            upgradeVersion = -1;
+        }
+        foodVersion = state.copyFoodChanges(food, foodVersion);
+        upgradeVersion = state.copyUpgradeChanges(upgrades, upgradeVersion);
+        tick = state.getTick();
+        publishedNanos = System.nanoTime();
+
+        Pacman pacman = state.getPacman();
+        pacmanX = pacman.getX();
+        pacmanY = pacman.getY();
+        pacmanDirection = pacman.getCurrentDirection();
+        pacmanMoveTicks = pacman.getMoveTicks();
+        if (previous != null && isStep(previous.pacmanX, previous.pacmanY, pacmanX, pacmanY)) {
+            pacmanFromX = previous.pacmanX;
+            pacmanFromY = previous.pacmanY;
+            pacmanMovedAt = tick;
+        } else if (previous != null && previous.pacmanX == pacmanX && previous.pacmanY == pacmanY) {
+            pacmanFromX = previous.pacmanFromX; // still on the way into the same cell, or standing
+            pacmanFromY = previous.pacmanFromY;
+            pacmanMovedAt = previous.pacmanMovedAt;
+        } else {
+            pacmanFromX = pacmanX; // first frame or put back to the start, no slide
+            pacmanFromY = pacmanY;
+            pacmanMovedAt = tick - pacmanMoveTicks;
+        }
+
+        GhostSwarm ghosts = state.getGhosts();
+        ghostCount = ghosts.size();
+        for (int i = 0; i < ghostCount; i++) {
+            int x = ghosts.getX(i);
+            int y = ghosts.getY(i);
+            ghostX[i] = x;
+            ghostY[i] = y;
+            ghostSprite[i] = ghosts.getSprite(i);
+            ghostMoveTicks[i] = ghosts.getSpeed(i);
+            if (previous != null && isStep(previous.ghostX[i], previous.ghostY[i], x, y)) {
+                ghostFromX[i] = previous.ghostX[i];
+                ghostFromY[i] = previous.ghostY[i];
+                ghostMovedAt[i] = tick;
+            } else if (previous != null && previous.ghostX[i] == x && previous.ghostY[i] == y) {
+                ghostFromX[i] = previous.ghostFromX[i];
+                ghostFromY[i] = previous.ghostFromY[i];
+                ghostMovedAt[i] = previous.ghostMovedAt[i];
+            } else {
+                ghostFromX[i] = x;
+                ghostFromY[i] = y;
+                ghostMovedAt[i] = tick - ghostMoveTicks[i];
+            }
+        }
+
+        score = state.getScore();
+        lives = state.getLives();
+        time = state.getTime();
+        gameOver = state.isGameOver();
+    }
+
+    // one cell away, anything further is a jump that is drawn without sliding
+    private static boolean isStep(int fromX, int fromY, int toX, int toY) {
+        return Math.abs(toX - fromX) + Math.abs(toY - fromY) == 1;
+    }
+
+    // where an entity is drawn at tick at, in cells, sliding from one cell to the next
+    private static double slide(int from, int to, int movedAt, int moveTicks, double at) {
+        double progress = (at - movedAt) / moveTicks;
+        if (progress >= 1) {
+            return to;
+        }
+        return from + (to - from) * Math.max(0, progress);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isWall(int x, int y) {
+        return BitGrid.get(walls, size, x, y);
+    }
+
+    public boolean isFood(int x, int y) {
+        return BitGrid.get(food, size, x, y);
+    }
+
+    public boolean isUpgrade(int x, int y) {
+        return BitGrid.get(upgrades, size, x, y);
+    }
+
+    // raw layers, for diffing against the previous frame a word at a time
+    long[] foodWords() {
+        return food;
+    }
+
+    long[] upgradeWords() {
+        return upgrades;
+    }
+
+    public int getPacmanX() {
+        return pacmanX;
+    }
+
+    public int getPacmanY() {
+        return pacmanY;
+    }
+
+    public int getPacmanDirection() {
+        return pacmanDirection;
+    }
+
+    /** Row Pacman is drawn at, at the fractional tick at, see slide. */
+    public double getPacmanRow(double at) {
+        return slide(pacmanFromX, pacmanX, pacmanMovedAt, pacmanMoveTicks, at);
+    }
+
+    public double getPacmanColumn(double at) {
+        return slide(pacmanFromY, pacmanY, pacmanMovedAt, pacmanMoveTicks, at);
+    }
+
+    /** True while Pacman is still sliding into his cell at tick at. */
+    public boolean isPacmanMoving(double at) {
+        return (pacmanFromX != pacmanX || pacmanFromY != pacmanY) && at - pacmanMovedAt < pacmanMoveTicks;
+    }
+
+    /** System.nanoTime when this frame was published, the tick it shows started about then. */
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    public long getInputNanos() {
+        return inputNanos;
+    }
+
+    void setInputNanos(long inputNanos) {
+        this.inputNanos = inputNanos;
+    }
+
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    public int getGhostX(int i) {
+        return ghostX[i];
+    }
+
+    public int getGhostY(int i) {
+        return ghostY[i];
+    }
+
+    public double getGhostRow(int i, double at) {
+        return slide(ghostFromX[i], ghostX[i], ghostMovedAt[i], ghostMoveTicks[i], at);
+    }
+
+    public double getGhostColumn(int i, double at) {
+        return slide(ghostFromY[i], ghostY[i], ghostMovedAt[i], ghostMoveTicks[i], at);
+    }
+
+    public int getGhostSprite(int i) {
+        return ghostSprite[i];
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
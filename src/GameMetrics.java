@@ -0,0 +1,239 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Timings and counters of one running game: a histogram per phase (simulate, collide and
+ * render on the game loop thread, paint on the EDT), the time from a key press until the
+ * frame with its effect is drawn, bytes allocated per tick, ticks the loop started late
+ * and the number of entities.
+ *
+ * The same numbers go to JDK Flight Recorder as pacman.Tick and pacman.Paint events when a
+ * recording has them enabled, to the Stats overlay of the board and to a CSV file at game over.
+ * Each phase is written by one thread only, the overlay reads them racily, good enough to look at.
+ */
+public class GameMetrics {
+    public static final int SIMULATE = 0;
+    public static final int COLLIDE = 1;
+    public static final int RENDER = 2;
+    public static final int PAINT = 3;
+    public static final int INPUT = 4; // input to render latency, not a phase but kept the same way
+    private static final String[] PHASE_NAMES = {"simulate", "collide", "render", "paint", "input"};
+
+    private static final long TICK_NANOS = GameState.TICK_MILLIS * 1_000_000L;
+    private static final long OVERLAY_REFRESH_NANOS = 250_000_000L;
+    // the newest games only, -Dpacman.metrics=off exports none
+    private static final RollingDirectory METRICS = new RollingDirectory("metrics", ".csv", 100);
+    // exports leave the game loop thread, which is shared by every running game
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "metrics-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the HotSpot bean knows per thread allocation, other JVMs may not have it
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+    private static final EventType PAINT_EVENT = EventType.getEventType(PaintEvent.class);
+
+    private final Histogram[] phases = new Histogram[PHASE_NAMES.length];
+    private final Histogram allocation = new Histogram(); // bytes per tick on the loop thread
+    private final long[] lastNanos = new long[PHASE_NAMES.length];
+    private long ticks;
+    private volatile long overruns;
+    private int ghosts, food, upgrades;
+
+    private String[] overlay = new String[0];
+    private long overlayUpdated;
+
+    public GameMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+
+    /** Bytes allocated by the calling thread so far, or -1 if the JVM can't tell. */
+    public static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public void record(int phase, long nanos) {
+        phases[phase].record(nanos);
+        lastNanos[phase] = nanos;
+    }
+
+    /** Called on the loop thread once a tick has been simulated, allocated is -1 when unknown. */
+    public void tickDone(GameState state, long allocated) {
+        ticks++;
+        if (allocated >= 0) {
+            allocation.record(allocated);
+        }
+        ghosts = state.getGhosts().size();
+        food = state.getFoodLeft();
+        upgrades = state.getUpgradeCount();
+        if (TICK_EVENT.isEnabled()) {
+            TickEvent event = new TickEvent();
+            event.tick = state.getTick();
+            event.simulate = lastNanos[SIMULATE];
+            event.collide = lastNanos[COLLIDE];
+            event.render = lastNanos[RENDER];
+            event.allocated = allocated;
+            event.overrun = lastNanos[SIMULATE] + lastNanos[COLLIDE] + lastNanos[RENDER] > TICK_NANOS;
+            event.ghosts = ghosts;
+            event.food = food;
+            event.upgrades = upgrades;
+            event.commit();
+        }
+    }
+
+    /** Ticks the loop started a whole tick late, kept up to date by the owner of the loop. */
+    public void setOverruns(long overruns) {
+        this.overruns = overruns;
+    }
+
+    /** Started before a paint, null when no recording wants paint events. */
+    public PaintEvent beginPaint() {
+        if (!PAINT_EVENT.isEnabled()) {
+            return null;
+        }
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        return event;
+    }
+
+    /** A frame answering a key press pressed latency nanos ago is being drawn. EDT only. */
+    public void inputShown(PaintEvent event, long latency) {
+        record(INPUT, latency);
+        if (event != null) {
+            event.inputLatency = latency;
+        }
+    }
+
+    public void endPaint(PaintEvent event, long nanos, int dirtyCells) {
+        record(PAINT, nanos);
+        if (event != null) {
+            event.dirtyCells = dirtyCells;
+            event.commit();
+        }
+    }
+
+    /** Lines for the Stats overlay, rebuilt at most four times a second. EDT only. */
+    public String[] overlayLines() {
+        long now = System.nanoTime();
+        if (overlay.length == 0 || now - overlayUpdated > OVERLAY_REFRESH_NANOS) {
+            overlayUpdated = now;
+            String[] lines = new String[phases.length + 3];
+            for (int i = 0; i < phases.length; i++) {
+                Histogram h = phases[i];
+                lines[i] = String.format("%-8s p50 %6.0f us  p99 %6.0f us  max %6.0f us",
+                        PHASE_NAMES[i], h.percentile(0.5) / 1e3, h.percentile(0.99) / 1e3, h.getMax() / 1e3);
+            }
+            lines[phases.length] = String.format("ticks %d  overruns %d", ticks, overruns);
+            lines[phases.length + 1] = allocation.getCount() == 0 ? "alloc/tick n/a"
+                    : String.format("alloc/tick mean %.0f B  max %d B", allocation.getMean(), allocation.getMax());
+            lines[phases.length + 2] = String.format("ghosts %d  food %d  upgrades %d", ghosts, food, upgrades);
+            overlay = lines;
+        }
+        return overlay;
+    }
+
+    /** exportCsv on a background thread, call once the game is over and nothing ticks any more. */
+    public CompletableFuture<Path> exportCsvInBackground(int boardSize) {
+        return CompletableFuture.supplyAsync(() -> exportCsv(boardSize), WRITER);
+    }
+
+    /** Writes the summary to metrics/<millis>-<size>.csv, returns the file or null if metrics are off or that failed. */
+    public Path exportCsv(int boardSize) {
+        if (!METRICS.isEnabled()) {
+            return null;
+        }
+        try {
+            Path file = METRICS.newFile(System.currentTimeMillis() + "-" + boardSize);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println("metric,count,mean,p50,p90,p99,max,unit");
+                for (int i = 0; i < phases.length; i++) {
+                    writeRow(out, PHASE_NAMES[i], phases[i], "ns");
+                }
+                writeRow(out, "allocated_per_tick", allocation, "bytes");
+                out.println("ticks," + ticks + ",,,,,,ticks");
+                out.println("overruns," + overruns + ",,,,,,ticks");
+                out.println("board_size," + boardSize + ",,,,,,cells");
+                out.println("ghosts," + ghosts + ",,,,,,ghosts");
+            }
+            return file;
+        } catch (IOException e) {
+            System.out.println("Could not write the metrics: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeRow(PrintWriter out, String name, Histogram h, String unit) {
+        out.printf("%s,%d,%.0f,%d,%d,%d,%d,%s%n", name, h.getCount(), h.getMean(),
+                h.percentile(0.5), h.percentile(0.9), h.percentile(0.99), h.getMax(), unit);
+    }
+
+    @Name("pacman.Tick")
+    @Label("Game Tick")
+    @Category("Pacman")
+    @Description("One fixed step of the game loop")
+    static class TickEvent extends Event {
+        @Label("Tick")
+        int tick;
+        @Label("Simulate")
+        @Timespan
+        long simulate;
+        @Label("Collide")
+        @Timespan
+        long collide;
+        @Label("Render")
+        @Description("Last snapshot publish, it does not happen every tick when the loop catches up")
+        @Timespan
+        long render;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+        @Label("Over Budget")
+        boolean overrun;
+        @Label("Ghosts")
+        int ghosts;
+        @Label("Food Left")
+        int food;
+        @Label("Upgrades")
+        int upgrades;
+    }
+
+    @Name("pacman.Paint")
+    @Label("Playfield Paint")
+    @Category("Pacman")
+    static class PaintEvent extends Event {
+        @Label("Dirty Cells")
+        int dirtyCells;
+        @Label("Input Latency")
+        @Description("Time since the key press this frame is the first to show, 0 if it shows none")
+        @Timespan
+        long inputLatency;
+    }
+}
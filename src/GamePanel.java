@@ -1,7 +1,11 @@
 import javax.swing.*;
 import java.awt.*;
+import java.io.Serial;
 
 public class GamePanel extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     private Board board;
 
     public GamePanel(String sizeType, JFrame parentFrame) {
@@ -10,6 +14,12 @@ public class GamePanel extends JPanel {
         add(board, BorderLayout.CENTER);
     }
 
+    public GamePanel(GameState state, JFrame parentFrame) {
+        setLayout(new BorderLayout());
+        board = new Board(state, parentFrame);
+        add(board, BorderLayout.CENTER);
+    }
+
 //    public void startGame() {
 //        Thread gameThread = new Thread(board);
 //        gameThread.start();
@@ -0,0 +1,43 @@
+import java.io.Serial;
+import java.util.Random;
+
+/**
+ * java.util.Random with its state out in the open, so a game can be saved and
+ * restored mid way and go on drawing exactly the numbers it would have drawn.
+ * Same generator and same sequence as Random. Not thread safe, a game only
+ * draws numbers on the thread that steps it.
+ */
+public class GameRandom extends Random {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public GameRandom(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        // also called from the Random constructor, before state is in use
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
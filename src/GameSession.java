@@ -0,0 +1,156 @@
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One game from start to finish, ticked with a fixed timestep. All game logic runs on
+ * the one game loop thread shared by every session in ticks of TICK_MILLIS, entities
+ * express their move rate as a number of ticks. When the loop falls behind it runs extra
+ * updates to catch up and skips the renders in between, so the simulation speed does not
+ * depend on the frame rate.
+ *
+ * A session goes NEW, RUNNING, then back and forth to PAUSED, and ends STOPPED, where it
+ * stays: it holds no thread of its own, so a stopped session is just garbage, and the
+ * release hook given to it runs exactly once on the way there. A tick that throws stops
+ * the session too, getFailure tells what went wrong. The loop thread itself goes away
+ * when no session has ticked for a while.
+ */
+public class GameSession {
+    public static final int TICK_MILLIS = 50;
+    private static final long TICK_NANOS = TICK_MILLIS * 1_000_000L;
+    // after this many updates in a row we render anyway and drop the remaining backlog
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final long IDLE_SECONDS = 30;
+
+    public enum State {
+        NEW, RUNNING, PAUSED, STOPPED
+    }
+
+    // cancelled ticks leave the queue at once, so nothing keeps a finished game reachable
+    private static final ScheduledThreadPoolExecutor LOOP = loop();
+
+    private static ScheduledThreadPoolExecutor loop() {
+        ScheduledThreadPoolExecutor loop = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "game-loop");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loop.setRemoveOnCancelPolicy(true);
+        loop.setKeepAliveTime(IDLE_SECONDS, TimeUnit.SECONDS);
+        loop.allowCoreThreadTimeOut(true);
+        return loop;
+    }
+
+    private final Runnable update;
+    private final Runnable render;
+    private final Runnable release;
+    // guarded by this, which a tick holds while it runs so stopping waits for it
+    private State state = State.NEW;
+    private ScheduledFuture<?> ticks;
+    private long nextTick;
+    private volatile long overruns; // ticks that started a whole tick late
+    private volatile Throwable failure;
+
+    /** Runs update every tick and render after the ticks that were due, release once when it stops. */
+    public GameSession(Runnable update, Runnable render, Runnable release) {
+        this.update = update;
+        this.render = render;
+        this.release = release;
+    }
+
+    /** Starts ticking, once. */
+    public synchronized void start() {
+        if (state != State.NEW) {
+            throw new IllegalStateException("Session already " + state);
+        }
+        schedule();
+    }
+
+    /** Stops ticking until resume, after the tick in progress if any. False if it was not running. */
+    public synchronized boolean pause() {
+        if (state != State.RUNNING) {
+            return false;
+        }
+        state = State.PAUSED;
+        ticks.cancel(false);
+        ticks = null;
+        return true;
+    }
+
+    /** Carries on after pause, the time spent paused is not caught up. False if it was not paused. */
+    public synchronized boolean resume() {
+        if (state != State.PAUSED) {
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * Ends the session for good and releases it. From any other thread it waits for a tick
+     * in progress to finish, from a tick the rest of that tick still runs. Stopping again does nothing.
+     */
+    public synchronized void stop() {
+        if (state == State.STOPPED) {
+            return;
+        }
+        state = State.STOPPED;
+        if (ticks != null) {
+            ticks.cancel(false);
+            ticks = null;
+        }
+        release.run();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** What a tick threw to end the session, null while it runs or when it was stopped. */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /** Times the loop found itself a whole tick or more behind schedule. */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    private void schedule() {
+        state = State.RUNNING;
+        nextTick = System.nanoTime() + TICK_NANOS;
+        ticks = LOOP.scheduleAtFixedRate(this::runDue, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    // the ticks due by now and one render, firings the executor makes up for after a stall find nothing due
+    private synchronized void runDue() {
+        try {
+            long now = System.nanoTime();
+            int updates = 0;
+            if (now - nextTick >= TICK_NANOS) {
+                overruns++;
+            }
+            while (state == State.RUNNING && now - nextTick >= 0 && updates < MAX_CATCH_UP_TICKS) {
+                update.run();
+                nextTick += TICK_NANOS;
+                updates++;
+            }
+            if (state != State.RUNNING) {
+                return;
+            }
+            if (updates == MAX_CATCH_UP_TICKS && now - nextTick >= 0) {
+                // too far behind, give up on the backlog instead of spiralling
+                nextTick = now + TICK_NANOS;
+            }
+            if (updates > 0) {
+                render.run();
+            }
+        } catch (RuntimeException | Error e) {
+            // the executor would drop the schedule without a word and leave the session RUNNING,
+            // so stop it here, the release hook can tell from getFailure why
+            failure = e;
+            System.out.println("Game stopped by an error in a tick: " + e);
+            stop();
+        }
+    }
+}
@@ -0,0 +1,526 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Headless game rules: walls, food, upgrades, ghosts, Pacman, lives and score.
+ * Nothing in here touches AWT or Swing, so games can be simulated without a display.
+ * The game is advanced one fixed tick at a time with step(input).
+ */
+public class GameState {
+    public static final int NO_INPUT = -1;
+    // directions used by Pacman, dx moves along the rows and dy along the columns
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int UP = 2;
+    public static final int DOWN = 3;
+
+    public static final int TICK_MILLIS = GameSession.TICK_MILLIS;
+    // move rates in ticks
+    private static final int GHOST_MOVE_TICKS = 200 / TICK_MILLIS;
+    private static final int GHOST_COUNT = 5;
+    // number of distinct ghost sprites, ghost i uses sprite i % GHOST_SPRITES
+    public static final int GHOST_SPRITES = 5;
+    private static final int START_LIVES = 3;
+    // after a catch Pacman can't be caught again for this long, so a ghost next to the start can't take every life at once
+    private static final int RESPAWN_GRACE_TICKS = 2000 / TICK_MILLIS;
+    private static final UpgradeType[] UPGRADE_TYPES = UpgradeType.values();
+    // every UPGRADE_EVERY counts of the game clock (getTime) an upgrade shows up with this chance
+    private static final float UPGRADE_CHANCE = 0.25f;
+    private static final int UPGRADE_EVERY = 5;
+
+    // layout of writeState, bump when it changes
+    public static final int STATE_VERSION = 5; // 4 kept one turn, 3 had no respawn grace, 2 no pre-turn, 1 upgrade flags that never ran out
+    private static final int STATE_HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 1;
+    private static final int UPGRADE_BYTES = 5;
+
+    private final int size;
+    private final BitGrid walls;
+    private final BitGrid food;
+    private final OccupancyGrid occupancy;
+    private final DistanceField distanceField;
+    private final GhostSwarm ghosts;
+    private final Pacman pacman;
+    private final UpgradeEffects effects;
+    private final long seed;
+    private final Maze maze;
+    private final GameRandom random;
+    private final int ghostCount;
+    private int lifeCounter;
+    private int timeCounter;
+    private int tickCounter;
+    private int graceUntil; // first tick Pacman can be caught again
+    private boolean gameOver;
+    private GameMetrics metrics;
+    private float upgradeChance = UPGRADE_CHANCE;
+    private int upgradeEvery = UPGRADE_EVERY;
+    // controllers and what they see, all null until the first controller is set
+    private PacmanController pacmanController;
+    private GhostController[] ghostControllers;
+    private Observation observation;
+
+    public GameState(int size, long seed) {
+        this(size, GHOST_COUNT, seed);
+    }
+
+    public GameState(int size) {
+        this(size, GHOST_COUNT, new Random().nextLong());
+    }
+
+    /**
+     * Game with a custom number of ghosts, used for stress runs and benchmarks.
+     * The seed picks the maze as well as everything random during the game.
+     */
+    public GameState(int size, int ghostCount, long seed) {
+        this.size = size;
+        this.ghostCount = ghostCount;
+        this.seed = seed;
+        this.maze = MazeGenerator.generate(size, seed);
+        this.random = new GameRandom(seed);
+        this.walls = new BitGrid(size, size);
+        this.food = new BitGrid(size, size);
+        this.occupancy = new OccupancyGrid(size, size);
+        this.distanceField = new DistanceField(size, size);
+        this.ghosts = new GhostSwarm(size, size, ghostCount);
+        this.effects = new UpgradeEffects(this);
+        initializeBoard();
+        this.pacman = new Pacman(this);
+    }
+
+    public static final String[] SIZE_TYPES = {"small", "medium", "large", "extra-large", "huge", "giant", "colossal"};
+
+    /** Rows and columns of a named board size, a plain number such as "512" gives that size. */
+    public static int sizeFor(String sizeType) {
+        switch (sizeType.toLowerCase()) {
+            case "small":
+                return 15;
+            case "medium":
+                return 18;
+            case "large":
+                return 21;
+            case "extra-large":
+                return 23;
+            case "huge":
+                return 26;
+            case "giant":
+                return 256;
+            case "colossal":
+                return 1024;
+            default:
+                try {
+                    int size = Integer.parseInt(sizeType);
+                    if (size >= 5 && size <= Short.MAX_VALUE) { // the score file keeps sizes as shorts
+                        return size;
+                    }
+                } catch (NumberFormatException e) {
+                    // not a number either
+                }
+                throw new IllegalArgumentException("Invalid board size type");
+        }
+    }
+
+    private void initializeBoard() {
+        lifeCounter = START_LIVES;
+        timeCounter = 0;
+        tickCounter = 0;
+        graceUntil = 0;
+
+        // a pellet on every open cell, the generator guarantees they can all be reached
+        maze.copyWallsTo(walls);
+        food.setInverseOf(walls);
+
+        occupancy.putUpgrade(maze.getStartX(), maze.getStartY(), UpgradeType.SPEED);
+
+        for (int i = 0; i < ghostCount; i++) { // 5 ghosts with different images by default
+            int x, y;
+            do {
+                x = random.nextInt(size);
+                y = random.nextInt(size);
+            } while (walls.get(x, y) || (x == maze.getStartX() && y == maze.getStartY())); // nor on Pacman
+
+            ghosts.place(i, x, y, GHOST_MOVE_TICKS, i % GHOST_SPRITES);
+            occupancy.addGhost(x, y, i % GHOST_SPRITES);
+        }
+    }
+
+    /**
+     * Advances the game by one tick with the direction the Pacman controller decides on,
+     * or with no input when there is no controller.
+     *
+     * @return the input the tick was stepped with, for recording
+     */
+    public int step() {
+        int input = NO_INPUT;
+        if (pacmanController != null && !gameOver) {
+            observation.fill(this);
+            input = pacmanController.decide(observation);
+        }
+        step(input);
+        return input;
+    }
+
+    /**
+     * Advances the game by one tick with every direction requested since the last one.
+     *
+     * @param inputs requested Pacman directions, oldest first, each queued as a turn
+     * @param count how many of inputs there are, 0 for none
+     */
+    public void step(int[] inputs, int count) {
+        if (!gameOver) {
+            for (int i = 0; i < count - 1; i++) {
+                pacman.setRequestedDirection(inputs[i]);
+            }
+        }
+        step(count > 0 ? inputs[count - 1] : NO_INPUT);
+    }
+
+    /**
+     * Advances the game by one tick.
+     *
+     * @param input requested Pacman direction, queued behind the turns not taken yet, or NO_INPUT for none
+     */
+    public void step(int input) {
+        if (gameOver) {
+            return;
+        }
+        long started = metrics != null ? System.nanoTime() : 0;
+        if (input != NO_INPUT) {
+            pacman.setRequestedDirection(input);
+        }
+        tickCounter++;
+        effects.tick(tickCounter);
+        pacman.tick();
+        if (tickCounter % GHOST_MOVE_TICKS == 0) {
+            timeCounter++;
+            if (timeCounter % upgradeEvery == 0) {
+                generateUpgrade();
+            }
+        }
+        moveGhosts(tickCounter);
+        long simulated = metrics != null ? System.nanoTime() : 0;
+        checkCollisions();
+        if (!hasFood()) {
+            gameOver = true;
+        }
+        if (metrics != null) {
+            metrics.record(GameMetrics.SIMULATE, simulated - started);
+            metrics.record(GameMetrics.COLLIDE, System.nanoTime() - simulated);
+        }
+    }
+
+    /**
+     * Changes how often upgrades show up, for balancing runs: one does with the given chance every
+     * interval counts of the game clock. Not saved.
+     */
+    public void setUpgradeOdds(float chance, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Upgrade interval must be at least 1");
+        }
+        upgradeChance = chance;
+        upgradeEvery = interval;
+    }
+
+    /** Lets controller steer Pacman through step(), null to go back to input given to step(input). */
+    public void setPacmanController(PacmanController controller) {
+        pacmanController = controller;
+        observe();
+    }
+
+    /** Lets controller steer ghost, null to let it chase Pacman again. Controllers are not saved. */
+    public void setGhostController(int ghost, GhostController controller) {
+        if (ghostControllers == null) {
+            ghostControllers = new GhostController[ghostCount];
+        }
+        ghostControllers[ghost] = controller;
+        if (controller == null) {
+            ghosts.steer(ghost, NO_INPUT);
+        }
+        observe();
+    }
+
+    /** Lets controller steer every ghost, null to let them all chase Pacman again. */
+    public void setGhostController(GhostController controller) {
+        for (int i = 0; i < ghostCount; i++) {
+            setGhostController(i, controller);
+        }
+    }
+
+    private void observe() {
+        if (observation == null) {
+            observation = new Observation(this);
+        }
+    }
+
+    /** Times the simulate and collide phases of every step into metrics, null to stop. */
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void checkCollisions() {
+        if (tickCounter >= graceUntil && isGhost(pacman.getX(), pacman.getY())
+                && !effects.isActive(UpgradeType.INVINCIBILITY)) {
+            effects.clear(); // Clear all upgrades
+            lifeCounter--;
+            if (lifeCounter <= 0) {
+                gameOver = true;
+            } else {
+                ghosts.sendHome(pacman.getX(), pacman.getY(), occupancy);
+                pacman.resetPosition();
+                graceUntil = tickCounter + RESPAWN_GRACE_TICKS;
+            }
+        }
+    }
+
+    public boolean isWall(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            return true; // treatin outoufbounds
+        }
+        return walls.get(x, y);
+    }
+
+    public boolean isFood(int x, int y) {
+        return food.get(x, y);
+    }
+
+    public void removeFood(int x, int y) {
+        food.clear(x, y);
+    }
+
+    // O(1), the food layer keeps its own pellet count
+    public boolean hasFood() {
+        return !food.isEmpty();
+    }
+
+    public int getFoodLeft() {
+        return food.count();
+    }
+
+    /** Pellets left in rows x0..x1 and columns y0..y1, bounds inclusive. */
+    public int countFood(int x0, int y0, int x1, int y1) {
+        return food.count(x0, y0, x1, y1);
+    }
+
+    public boolean isUpgrade(int x, int y) {
+        return occupancy.upgradeAt(x, y) != null;
+    }
+
+    public void removeUpgrade(int x, int y) {
+        occupancy.removeUpgrade(x, y);
+    }
+
+    public void applyUpgrade(Pacman pacman) {
+        UpgradeType type = occupancy.removeUpgrade(pacman.getX(), pacman.getY());
+        if (type != null) {
+            effects.apply(type, tickCounter);
+        }
+    }
+
+    public boolean isGhost(int x, int y) {
+        return occupancy.ghostsAt(x, y) > 0;
+    }
+
+    public int getGhostCount(int x, int y) {
+        return occupancy.ghostsAt(x, y);
+    }
+
+    /** Sprite of the ghost drawn on top at (x, y), only meaningful when isGhost(x, y). */
+    public int getGhostSprite(int x, int y) {
+        return occupancy.ghostSpriteAt(x, y);
+    }
+
+    public int getUpgradeCount() {
+        return occupancy.getUpgradeCount();
+    }
+
+    /** Moves every ghost one step toward Pacman, regardless of its speed. */
+    public void moveGhosts() {
+        moveGhosts(-1);
+    }
+
+    // moves the ghosts due this tick, or all of them when tick is negative
+    private void moveGhosts(int tick) {
+        if (ghostControllers != null) {
+            steerGhosts(tick);
+        }
+        distanceField.update(walls, ghosts, pacman.getX(), pacman.getY());
+        ghosts.move(distanceField, walls, occupancy, pacman.getX(), pacman.getY(), tick);
+    }
+
+    // asks the controllers of the ghosts that move this tick which way, Pacman has already moved
+    private void steerGhosts(int tick) {
+        boolean observed = false;
+        for (int i = 0; i < ghostCount; i++) {
+            if (ghostControllers[i] != null && ghosts.movesOn(i, tick)) {
+                if (!observed) {
+                    observation.fill(this);
+                    observed = true;
+                }
+                ghosts.steer(i, ghostControllers[i].decide(i, observation));
+            }
+        }
+    }
+
+    public void incrementLives() {
+        lifeCounter++;
+    }
+
+    private void generateUpgrade() {
+        if (random.nextFloat() < upgradeChance) { // a random one of the upgrade types
+            int x, y;
+            int attempts = 0;
+            do {
+                // early in a game there may be no free cell at all, so give up instead of spinning forever
+                if (attempts++ == size * size) {
+                    return;
+                }
+                x = random.nextInt(size);
+                y = random.nextInt(size);
+            } while (isWall(x, y) || isFood(x, y) || isUpgrade(x, y) || isGhost(x, y) || (x == pacman.getX() && y == pacman.getY()));
+
+            UpgradeType type = UPGRADE_TYPES[random.nextInt(UPGRADE_TYPES.length)];
+            occupancy.putUpgrade(x, y, type);
+        }
+    }
+
+    /** Bytes writeState needs for the game as it is right now. */
+    public int stateBytes() {
+        return STATE_HEADER_BYTES + food.wordCount() * 8 + 4 + getUpgradeCount() * UPGRADE_BYTES
+                + ghostCount * GhostSwarm.GHOST_BYTES + Pacman.STATE_BYTES + UpgradeEffects.STATE_BYTES;
+    }
+
+    /**
+     * Writes everything needed to carry on this game later: random generator, counters, food,
+     * upgrades, ghosts, Pacman and the upgrades in effect. The walls are not written, they follow from size and seed.
+     */
+    public void writeState(ByteBuffer out) {
+        out.putInt(STATE_VERSION).putInt(size).putInt(ghostCount).putLong(seed);
+        out.putLong(random.getState());
+        out.putInt(lifeCounter).putInt(timeCounter).putInt(tickCounter).putInt(graceUntil).put((byte) (gameOver ? 1 : 0));
+        food.writeTo(out);
+        BitGrid upgradeCells = occupancy.getUpgradeCells();
+        out.putInt(upgradeCells.count());
+        for (int cell = upgradeCells.nextSet(0); cell >= 0; cell = upgradeCells.nextSet(cell + 1)) {
+            out.putInt(cell).put((byte) occupancy.upgradeAt(cell / size, cell % size).ordinal());
+        }
+        ghosts.writeTo(out);
+        pacman.writeTo(out);
+        effects.writeTo(out, tickCounter);
+    }
+
+    /** Puts this game back into a state written by writeState for the same size, ghost count and seed. */
+    public void readState(ByteBuffer in) {
+        int version = in.getInt();
+        if (version != STATE_VERSION) {
+            throw new IllegalArgumentException("Unsupported game state version " + version);
+        }
+        if (in.getInt() != size || in.getInt() != ghostCount || in.getLong() != seed) {
+            throw new IllegalArgumentException("Saved state belongs to a different game");
+        }
+        random.setState(in.getLong());
+        lifeCounter = in.getInt();
+        timeCounter = in.getInt();
+        tickCounter = in.getInt();
+        graceUntil = in.getInt();
+        gameOver = in.get() != 0;
+        food.readFrom(in);
+        occupancy.clearUpgrades();
+        int upgrades = in.getInt();
+        for (int i = 0; i < upgrades; i++) {
+            int cell = in.getInt();
+            occupancy.putUpgrade(cell / size, cell % size, UPGRADE_TYPES[in.get()]);
+        }
+        for (int i = 0; i < ghostCount; i++) {
+            occupancy.removeGhost(ghosts.getX(i), ghosts.getY(i));
+        }
+        ghosts.readFrom(in);
+        for (int i = 0; i < ghostCount; i++) {
+            occupancy.addGhost(ghosts.getX(i), ghosts.getY(i), ghosts.getSprite(i));
+        }
+        pacman.readFrom(in);
+        effects.readFrom(in, tickCounter);
+        distanceField.invalidate();
+    }
+
+    /** A new game in the state written by writeState. */
+    public static GameState fromState(ByteBuffer in) {
+        int start = in.position();
+        in.getInt(); // version, checked by readState
+        int size = in.getInt();
+        int ghostCount = in.getInt();
+        long seed = in.getLong();
+        in.position(start);
+        GameState state = new GameState(size, ghostCount, seed);
+        state.readState(in);
+        return state;
+    }
+
+    // packed layers for Observation, dest must hold (size * size + 63) / 64 words
+    public void copyWalls(long[] dest) {
+        walls.copyTo(dest);
+    }
+
+    public void copyFood(long[] dest) {
+        food.copyTo(dest);
+    }
+
+    public void copyUpgrades(long[] dest) {
+        occupancy.getUpgradeCells().copyTo(dest);
+    }
+
+    // walls never change after generation, so every FrameSnapshot reads the maze's own words
+    long[] wallWords() {
+        return maze.wallWords();
+    }
+
+    // for FrameSnapshot, see BitGrid.copyChangesTo
+    long copyFoodChanges(long[] dest, long since) {
+        return food.copyChangesTo(dest, since);
+    }
+
+    long copyUpgradeChanges(long[] dest, long since) {
+        return occupancy.getUpgradeCells().copyChangesTo(dest, since);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public int getBoardSize() {
+        return size;
+    }
+
+    public Pacman getPacman() {
+        return pacman;
+    }
+
+    public GhostSwarm getGhosts() {
+        return ghosts;
+    }
+
+    public UpgradeEffects getEffects() {
+        return effects;
+    }
+
+    public int getLives() {
+        return lifeCounter;
+    }
+
+    public int getScore() {
+        return pacman.getScore();
+    }
+
+    public int getTime() {
+        return timeCounter;
+    }
+
+    public int getTick() {
+        return tickCounter;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
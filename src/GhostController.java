@@ -0,0 +1,13 @@
+/**
+ * Steers ghosts in place of the swarm's chase, see GameState.setGhostController.
+ * Called on the thread that steps the game, for each ghost it controls on the ticks that
+ * ghost moves, after Pacman has moved. One instance may control any number of ghosts.
+ */
+public interface GhostController {
+    /**
+     * Direction ghost steps in, GameState.LEFT..DOWN, or GameState.NO_INPUT to chase Pacman
+     * like an uncontrolled ghost. A ghost told to walk into a wall stays where it is.
+     * The observation is only valid during the call.
+     */
+    int decide(int ghost, Observation observation);
+}
@@ -0,0 +1,326 @@
+import java.nio.ByteBuffer;
+import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * All ghosts of a game stored as parallel primitive arrays instead of one object per ghost.
+ *
+ * A move runs in three phases: every ghost picks its target cell, ghosts heading into the
+ * same cell claim it (the lowest index wins, the rest stay put), then the winners move.
+ * A ghost steered by a GhostController heads the way it was told instead of chasing.
+ * The first two phases only read shared state, so with PARALLEL_THRESHOLD ghosts or more
+ * they are split across the fork/join pool. The result is the same whether it runs in
+ * parallel or not. The tasks are built once and reset before each move. The calling thread
+ * runs any no worker has taken yet and parks until the workers are done with the rest.
+ * It waits on a counter rather than join(), which allocates a wait node every time it has
+ * to park, so moving allocates nothing however many ghosts there are.
+ */
+public class GhostSwarm {
+    // below this many ghosts forking costs more than it saves
+    public static final int PARALLEL_THRESHOLD = 2048;
+    private static final int SPLIT_SIZE = 512;
+    private static final VarHandle CLAIM = MethodHandles.arrayElementVarHandle(long[].class);
+    // bytes per ghost written by writeTo
+    public static final int GHOST_BYTES = 20;
+
+    private final int rows;
+    private final int columns;
+    private final int count;
+    private final int[] x;
+    private final int[] y;
+    private final int[] direction;  // last direction moved, GameState.LEFT..DOWN
+    private final int[] speed;      // ticks between moves
+    private final int[] sprite;
+    private final int[] steer;      // direction set by a controller for the next move, or NO_INPUT to chase
+    // where each ghost was placed at the start, not saved since a restored game places them again
+    private final int[] homeX;
+    private final int[] homeY;
+
+    // scratch state of one move
+    private final int[] target;     // cell each ghost wants, or -1 to stay
+    private final long[] claim;     // per cell: generation in the high half, winning ghost in the low half
+    private int generation;
+    private final DecideTask[] decideTasks; // SPLIT_SIZE ghosts each, null below PARALLEL_THRESHOLD
+    private final AtomicInteger pending = new AtomicInteger(); // forked tasks still running
+    private volatile Thread waiter;      // the thread moving the ghosts, unparked by the last task
+    private volatile Throwable failure;  // thrown by a task on a worker, rethrown by the waiter
+
+    private DistanceField field;
+    private BitGrid walls;
+    private int pacmanX, pacmanY;
+    private int tick;
+
+    public GhostSwarm(int rows, int columns, int count) {
+        this.rows = rows;
+        this.columns = columns;
+        this.count = count;
+        this.x = new int[count];
+        this.y = new int[count];
+        this.direction = new int[count];
+        this.speed = new int[count];
+        this.sprite = new int[count];
+        this.steer = new int[count];
+        this.homeX = new int[count];
+        this.homeY = new int[count];
+        Arrays.fill(steer, GameState.NO_INPUT);
+        this.target = new int[count];
+        this.claim = new long[rows * columns];
+        if (count >= PARALLEL_THRESHOLD) {
+            decideTasks = new DecideTask[(count + SPLIT_SIZE - 1) / SPLIT_SIZE];
+            for (int i = 0; i < decideTasks.length; i++) {
+                decideTasks[i] = new DecideTask(i * SPLIT_SIZE, Math.min(count, (i + 1) * SPLIT_SIZE));
+            }
+        } else {
+            decideTasks = null;
+        }
+    }
+
+    public void place(int i, int x, int y, int speed, int sprite) {
+        this.x[i] = x;
+        this.y[i] = y;
+        this.direction[i] = GameState.RIGHT;
+        this.speed[i] = speed;
+        this.sprite[i] = sprite;
+        this.homeX[i] = x;
+        this.homeY[i] = y;
+    }
+
+    /**
+     * Sends every ghost on (x, y) back to where it was placed, after it caught Pacman there.
+     * A ghost standing on Pacman's cell has no closer cell to go to and would stay and catch
+     * him again as soon as he is put back.
+     */
+    public void sendHome(int x, int y, OccupancyGrid occupancy) {
+        for (int i = 0; i < count; i++) {
+            if (this.x[i] == x && this.y[i] == y) {
+                occupancy.moveGhost(x, y, homeX[i], homeY[i], sprite[i]);
+                this.x[i] = homeX[i];
+                this.y[i] = homeY[i];
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getX(int i) {
+        return x[i];
+    }
+
+    public int getY(int i) {
+        return y[i];
+    }
+
+    public int getDirection(int i) {
+        return direction[i];
+    }
+
+    public int getSpeed(int i) {
+        return speed[i];
+    }
+
+    public void setSpeed(int i, int speed) {
+        this.speed[i] = speed;
+    }
+
+    /** True if ghost i moves on this tick. */
+    public boolean movesOn(int i, int tick) {
+        return tick < 0 || tick % speed[i] == 0;
+    }
+
+    /** Makes ghost i step in direction on its moves from now on, NO_INPUT to chase Pacman again. */
+    public void steer(int i, int direction) {
+        steer[i] = direction;
+    }
+
+    public int getSprite(int i) {
+        return sprite[i];
+    }
+
+    // position, direction, speed and sprite of every ghost, for saved games
+    public void writeTo(ByteBuffer out) {
+        for (int i = 0; i < count; i++) {
+            out.putInt(x[i]).putInt(y[i]).putInt(direction[i]).putInt(speed[i]).putInt(sprite[i]);
+        }
+    }
+
+    public void readFrom(ByteBuffer in) {
+        for (int i = 0; i < count; i++) {
+            x[i] = in.getInt();
+            y[i] = in.getInt();
+            direction[i] = in.getInt();
+            speed[i] = in.getInt();
+            sprite[i] = in.getInt();
+        }
+    }
+
+    /**
+     * Moves every ghost whose speed divides the tick, or every ghost when tick is negative.
+     * Ghosts step to the neighbor closest to Pacman along the distance field.
+     */
+    public void move(DistanceField field, BitGrid walls, OccupancyGrid occupancy, int pacmanX, int pacmanY, int tick) {
+        this.field = field;
+        this.walls = walls;
+        this.pacmanX = pacmanX;
+        this.pacmanY = pacmanY;
+        this.tick = tick;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(claim, 0L);
+            generation = 1;
+        }
+
+        if (decideTasks != null) {
+            decideInParallel();
+        } else {
+            decide(0, count);
+        }
+
+        // applying the winners is a cheap sequential pass, the occupancy grid is not thread safe
+        for (int i = 0; i < count; i++) {
+            int cell = target[i];
+            if (cell < 0 || (int) claim[cell] != i) {
+                continue;
+            }
+            int nx = cell / columns;
+            int ny = cell - nx * columns;
+            occupancy.moveGhost(x[i], y[i], nx, ny, sprite[i]);
+            direction[i] = directionOf(nx - x[i], ny - y[i]);
+            x[i] = nx;
+            y[i] = ny;
+        }
+    }
+
+    // phases one and two for ghosts from..to, safe to run for disjoint ranges at once
+    private void decide(int from, int to) {
+        long gen = (long) generation << 32;
+        for (int i = from; i < to; i++) {
+            if (!movesOn(i, tick)) {
+                target[i] = -1;
+                continue;
+            }
+            int cell = chooseTarget(i);
+            target[i] = cell;
+            if (cell < 0) {
+                continue;
+            }
+            long mine = gen | i;
+            while (true) {
+                long current = (long) CLAIM.getVolatile(claim, cell);
+                if ((current & 0xFFFFFFFF00000000L) == gen && (int) current <= i) {
+                    break; // a lower ghost already has it
+                }
+                if (CLAIM.compareAndSet(claim, cell, current, mine)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // cell ghost i wants to move into, or -1 to stay
+    private int chooseTarget(int i) {
+        int gx = x[i], gy = y[i];
+        if (steer[i] != GameState.NO_INPUT) {
+            int nx = gx + (steer[i] == GameState.UP ? -1 : steer[i] == GameState.DOWN ? 1 : 0);
+            int ny = gy + (steer[i] == GameState.LEFT ? -1 : steer[i] == GameState.RIGHT ? 1 : 0);
+            if (nx < 0 || ny < 0 || nx >= rows || ny >= columns || walls.get(nx, ny)) {
+                return -1;
+            }
+            return nx * columns + ny;
+        }
+        int best = field.distanceAt(gx, gy);
+        int newX = gx, newY = gy;
+        if (best == DistanceField.UNREACHABLE) {
+            // cut off from Pacman, greedy step toward its coordinates, stays put when it hits a wall
+            int dx = pacmanX - gx;
+            int dy = pacmanY - gy;
+            if (Math.abs(dx) > Math.abs(dy)) {
+                newX += dx > 0 ? 1 : -1;
+            } else {
+                newY += dy > 0 ? 1 : -1;
+            }
+            if (newX < 0 || newY < 0 || newX >= rows || newY >= columns || walls.get(newX, newY)) {
+                return -1;
+            }
+            return newX * columns + newY;
+        }
+        // prefer the axis Pacman is farther away on, like the greedy chase does
+        boolean rowsFirst = Math.abs(pacmanX - gx) > Math.abs(pacmanY - gy);
+        for (int k = 0; k < 4; k++) {
+            int dir = rowsFirst ? k : (k + 2) & 3;
+            int nx = gx + (dir == 0 ? -1 : dir == 1 ? 1 : 0);
+            int ny = gy + (dir == 2 ? -1 : dir == 3 ? 1 : 0);
+            int d = field.distanceAt(nx, ny);
+            if (d < best) {
+                best = d;
+                newX = nx;
+                newY = ny;
+            }
+        }
+        return newX == gx && newY == gy ? -1 : newX * columns + newY;
+    }
+
+    // dx moves along the rows (up/down), dy along the columns (left/right)
+    private static int directionOf(int dx, int dy) {
+        if (dx < 0) return GameState.UP;
+        if (dx > 0) return GameState.DOWN;
+        return dy < 0 ? GameState.LEFT : GameState.RIGHT;
+    }
+
+    // forks all but the first range, runs that one here and what no worker picked up, then waits for the rest
+    private void decideInParallel() {
+        waiter = Thread.currentThread();
+        pending.set(decideTasks.length - 1);
+        for (int i = 1; i < decideTasks.length; i++) {
+            decideTasks[i].reinitialize();
+            decideTasks[i].fork();
+        }
+        decide(decideTasks[0].from, decideTasks[0].to);
+        for (int i = decideTasks.length - 1; i > 0; i--) {
+            if (decideTasks[i].tryUnfork()) {
+                decideTasks[i].invoke();
+            }
+        }
+        while (pending.get() != 0) {
+            LockSupport.park(this);
+        }
+        Throwable thrown = failure;
+        if (thrown != null) {
+            failure = null;
+            if (thrown instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) thrown;
+        }
+    }
+
+    private class DecideTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        DecideTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                decide(from, to);
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+    }
+}
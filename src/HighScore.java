@@ -4,15 +4,36 @@ public class HighScore implements Serializable {
     private static final long serialVersionUID = 1L;
     private String name;
     private int score;
+    private int boardSize; // 0 when not known, like in scores saved by older versions
+    private long time;
 
     public HighScore(String name, int score) {
+        this(name, score, 0, 0L);
+    }
+
+    public HighScore(String name, int score, int boardSize, long time) {
         this.name = name;
         this.score = score;
+        this.boardSize = boardSize;
+        this.time = time;
     }
+
+    public String getName() {
+        return name;
+    }
+
     public int getScore() {
         return score;
     }
 
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
     @Override
     public String toString() {
         return name + ": " + score;
@@ -1,50 +1,111 @@
-import java.io.*;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
+/**
+ * The one leaderboard of the process, shared by the menu and every game.
+ * Top scores are kept in memory per board size. A watcher thread reloads them when
+ * another game instance writes to the score file, so reading never touches the disk.
+ */
 public class HighScoreManager implements Serializable {
     private static final long serialVersionUID = 1L;
-    private List<HighScore> highScores;
+    private static final Path SCORE_FILE = Paths.get("highscores.dat");
+    // the ObjectOutputStream file older versions wrote, imported once
+    private static final Path LEGACY_FILE = Paths.get("highscores.txt");
+    // games kept on disk, every game is recorded and not only the top ten
+    private static final int RETAINED_GAMES = 10_000_000;
 
-    public HighScoreManager() {
-        highScores = new ArrayList<>();
+    private static HighScoreManager instance;
+
+    private transient ScoreStore store;
+
+    private HighScoreManager() {
         loadHighScores();
+        if (store != null) {
+            Thread watcher = new Thread(this::watchScoreFile, "score-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    public static synchronized HighScoreManager getInstance() {
+        if (instance == null) {
+            instance = new HighScoreManager();
+        }
+        return instance;
     }
 
     public void addHighScore(String name, int score) {
-        highScores.add(new HighScore(name, score));
-        Collections.sort(highScores, Comparator.comparingInt(HighScore::getScore).reversed());
-        if (highScores.size() > 10) {
-            highScores.remove(highScores.size() - 1);
+        addHighScore(name, score, 0);
+    }
+
+    public void addHighScore(String name, int score, int boardSize) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.append(name, score, boardSize);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        saveHighScores();
     }
 
+    /** Best scores over all board sizes. */
     public List<HighScore> getHighScores() {
-        return highScores;
+        return store != null ? store.top() : new ArrayList<>();
+    }
+
+    /** Best scores on boards of this size. */
+    public List<HighScore> getHighScores(int boardSize) {
+        return store != null ? store.top(boardSize) : new ArrayList<>();
     }
 
     private void loadHighScores() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("highscores.txt"))) {
-            //reads the serialized highScore's object
-            highScores = (List<HighScore>) ois.readObject();
-        } catch (FileNotFoundException e) {
-            // it might be on the first time, so ignoring
-        } catch (IOException | ClassNotFoundException e) {
-            // If there's an error reading the file, reset the high scores
-            System.out.println("Error reading high score file. Resetting high scores.");
-            //creating empty array
-            highScores = new ArrayList<>();
+        try {
+            boolean firstRun = !Files.exists(SCORE_FILE);
+            store = new ScoreStore(SCORE_FILE, RETAINED_GAMES);
+            if (firstRun && Files.exists(LEGACY_FILE)) {
+                store.importLegacy(LEGACY_FILE);
+            }
+        } catch (IOException e) {
+            // unreadable score file, run without high scores instead of wiping it
+            System.out.println("Error reading high score file: " + e.getMessage());
         }
     }
 
-    private void saveHighScores() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("highscores.txt"))) {
-            oos.writeObject(highScores);
+    // runs on the watcher thread, our own appends wake it too but then refresh finds nothing new
+    private void watchScoreFile() {
+        Path directory = SCORE_FILE.toAbsolutePath().getParent();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || SCORE_FILE.getFileName().equals(event.context());
+                }
+                if (changed) {
+                    store.refresh();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
         } catch (IOException e) {
-            e.printStackTrace();
+            // scores stay as they are until this instance writes again
+            System.out.println("Stopped watching the high score file: " + e.getMessage());
         }
     }
 }
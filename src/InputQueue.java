@@ -0,0 +1,57 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direction requests on their way from the EDT to the game loop, each with the
+ * System.nanoTime it was made at. A lock free ring for one producer and one consumer:
+ * the EDT offers, the loop drains once per tick. Nothing is allocated after construction,
+ * when the loop falls so far behind that the ring is full new requests are dropped.
+ */
+public class InputQueue {
+    static final int CAPACITY = 64; // power of two
+
+    private final int[] directions = new int[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // next to take, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next to fill, written by the producer
+    private long drainedSince; // consumer only
+
+    /** Queues a direction requested at nanos, returns false if the queue is full. Producer only. */
+    public boolean offer(int direction, long nanos) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            return false;
+        }
+        int slot = (int) t & (CAPACITY - 1);
+        directions[slot] = direction;
+        times[slot] = nanos;
+        tail.lazySet(t + 1); // publishes the slot
+        return true;
+    }
+
+    /**
+     * Takes every queued request into the given array, oldest first, and returns how many
+     * there were. Each one is a turn of its own that Pacman keeps in order, into must hold
+     * CAPACITY. Consumer only.
+     */
+    public int drain(int[] into) {
+        long h = head.get();
+        long t = tail.get();
+        drainedSince = h == t ? 0 : times[(int) h & (CAPACITY - 1)];
+        int count = (int) (t - h);
+        for (int i = 0; i < count; i++) {
+            into[i] = directions[(int) (h + i) & (CAPACITY - 1)];
+        }
+        head.lazySet(t);
+        return count;
+    }
+
+    /** Drops every queued request. Consumer only. */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    /** When the oldest request taken by the last drain was made, 0 if it took none. */
+    public long getDrainedSince() {
+        return drainedSince;
+    }
+}
@@ -3,6 +3,8 @@ import java.awt.*;
 
 public class Main {
     public static void main(String[] args) {
+        // images decode on background threads while the window comes up
+        Assets.preload();
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Pacman Game");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -14,6 +16,7 @@ public class Main {
 
             frame.setLocationRelativeTo(null); // Center the frame
             frame.setVisible(true);
+            SwingUtilities.invokeLater(() -> Assets.logTiming("menu shown"));
         });
     }
 }
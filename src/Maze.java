@@ -0,0 +1,54 @@
+/**
+ * Immutable wall layout of a size x size board, as built by MazeGenerator.
+ * Walls are packed like a BitGrid, cell (x, y) is bit x * size + y.
+ * Every open cell is reachable from the start cell in the middle of the board.
+ */
+public final class Maze {
+    private final int size;
+    private final long seed;
+    private final long[] walls;
+    private final int openCells;
+
+    Maze(int size, long seed, long[] walls, int openCells) {
+        this.size = size;
+        this.seed = seed;
+        this.walls = walls;
+        this.openCells = openCells;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isWall(int x, int y) {
+        return BitGrid.get(walls, size, x, y);
+    }
+
+    /** Copies the walls into a size x size grid, a word at a time. */
+    public void copyWallsTo(BitGrid grid) {
+        grid.copyFrom(walls);
+    }
+
+    // the packed walls themselves, shared by every FrameSnapshot of the game, never written to
+    long[] wallWords() {
+        return walls;
+    }
+
+    /** Number of cells that are not walls, all of them reachable from the start. */
+    public int getOpenCells() {
+        return openCells;
+    }
+
+    /** Pacman's start cell, always open. */
+    public int getStartX() {
+        return size / 2;
+    }
+
+    public int getStartY() {
+        return size / 2;
+    }
+}
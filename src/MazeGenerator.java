@@ -0,0 +1,164 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds connected mazes with loops for any board size from a seed, in time linear
+ * in the number of cells.
+ *
+ * Rooms sit on odd coordinates with the cells between them as passages. A randomized
+ * depth first walk opens a spanning tree of passages, so every room is reachable, then
+ * a share of the remaining passages is opened too so the maze has loops to run around.
+ * A final flood fill from the start cell checks the result and walls up anything it
+ * can't reach, so there are never pellets or ghost spawns in sealed pockets.
+ *
+ * The same (size, seed) always gives the same maze, recent ones are cached.
+ */
+public final class MazeGenerator {
+    // chance that a passage left closed by the spanning tree is opened anyway
+    private static final double LOOP_CHANCE = 0.15;
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<Key, Maze> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Maze> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private record Key(int size, long seed) {
+    }
+
+    private MazeGenerator() {
+    }
+
+    /** The maze for this size and seed, generated on first use. Safe to call from any thread. */
+    public static Maze generate(int size, long seed) {
+        if (size < 3) {
+            throw new IllegalArgumentException("Board too small for a maze: " + size);
+        }
+        Key key = new Key(size, seed);
+        synchronized (CACHE) {
+            Maze cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // generated outside the lock, two threads asking for the same new maze build equal copies
+        Maze maze = build(size, seed);
+        synchronized (CACHE) {
+            Maze raced = CACHE.putIfAbsent(key, maze);
+            return raced != null ? raced : maze;
+        }
+    }
+
+    private static Maze build(int size, long seed) {
+        Random random = new Random(seed);
+        boolean[] open = new boolean[size * size];
+        int rooms = (size - 1) / 2; // rooms per row and per column, at coordinates 1, 3, 5, ...
+
+        carveSpanningTree(open, size, rooms, random);
+
+        // loops: open some of the passages between two rooms the tree left closed
+        for (int x = 1; x < size - 1; x++) {
+            for (int y = 1; y < size - 1; y++) {
+                boolean betweenRows = x % 2 == 0 && y % 2 == 1 && x + 1 < 2 * rooms + 1;
+                boolean betweenColumns = x % 2 == 1 && y % 2 == 0 && y + 1 < 2 * rooms + 1;
+                if ((betweenRows || betweenColumns) && !open[x * size + y] && random.nextDouble() < LOOP_CHANCE) {
+                    open[x * size + y] = true;
+                }
+            }
+        }
+
+        // on even sizes the rooms leave one spare row and column along the far border, make them a corridor
+        if (size % 2 == 0 && size > 3) {
+            for (int i = 1; i < size - 1; i++) {
+                open[(size - 2) * size + i] = true;
+                open[i * size + size - 2] = true;
+            }
+        }
+
+        // the start cell can fall on a pillar between four rooms, open it and the passage to its left
+        int start = (size / 2) * size + size / 2;
+        open[start] = true;
+        if ((size / 2) % 2 == 0 && size / 2 > 1) {
+            open[start - 1] = true;
+        }
+
+        return seal(size, seed, open, start);
+    }
+
+    // iterative randomized depth first walk over the rooms, opening the passage to every room it enters
+    private static void carveSpanningTree(boolean[] open, int size, int rooms, Random random) {
+        if (rooms == 0) {
+            return;
+        }
+        boolean[] visited = new boolean[rooms * rooms];
+        int[] stack = new int[rooms * rooms];
+        int[] candidates = new int[4];
+        int top = 0;
+        int first = random.nextInt(rooms * rooms);
+        visited[first] = true;
+        stack[top++] = first;
+        open[cellOf(first, rooms, size)] = true;
+        while (top > 0) {
+            int room = stack[top - 1];
+            int row = room / rooms;
+            int column = room % rooms;
+            int found = 0;
+            if (row > 0 && !visited[room - rooms]) candidates[found++] = room - rooms;
+            if (row < rooms - 1 && !visited[room + rooms]) candidates[found++] = room + rooms;
+            if (column > 0 && !visited[room - 1]) candidates[found++] = room - 1;
+            if (column < rooms - 1 && !visited[room + 1]) candidates[found++] = room + 1;
+            if (found == 0) {
+                top--;
+                continue;
+            }
+            int next = candidates[random.nextInt(found)];
+            visited[next] = true;
+            int from = cellOf(room, rooms, size);
+            int to = cellOf(next, rooms, size);
+            open[to] = true;
+            open[(from + to) / 2] = true; // the passage halfway between the two rooms
+            stack[top++] = next;
+        }
+    }
+
+    private static int cellOf(int room, int rooms, int size) {
+        return (2 * (room / rooms) + 1) * size + 2 * (room % rooms) + 1;
+    }
+
+    // flood fill from the start, open cells it doesn't reach become walls
+    private static Maze seal(int size, long seed, boolean[] open, int start) {
+        boolean[] reached = new boolean[size * size];
+        int[] queue = new int[size * size];
+        int head = 0, tail = 0;
+        reached[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell / size;
+            int y = cell % size;
+            if (x > 0) tail = visit(cell - size, open, reached, queue, tail);
+            if (x < size - 1) tail = visit(cell + size, open, reached, queue, tail);
+            if (y > 0) tail = visit(cell - 1, open, reached, queue, tail);
+            if (y < size - 1) tail = visit(cell + 1, open, reached, queue, tail);
+        }
+
+        long[] walls = new long[(size * size + 63) >>> 6];
+        for (int cell = 0; cell < size * size; cell++) {
+            if (!reached[cell]) {
+                walls[cell >>> 6] |= 1L << cell;
+            }
+        }
+        return new Maze(size, seed, walls, tail);
+    }
+
+    private static int visit(int cell, boolean[] open, boolean[] reached, int[] queue, int tail) {
+        if (open[cell] && !reached[cell]) {
+            reached[cell] = true;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+}
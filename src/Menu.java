@@ -2,24 +2,35 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.image.BufferedImage;
+import java.io.Serial;
 import java.util.List;
 
 public class Menu extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    static final String[] SIZE_OPTIONS = {"Small", "Medium", "Large", "Extra-Large", "Huge", "Giant", "Colossal"};
+
     private final JFrame parentFrame;
     private final JLabel backgroundLabel;
 
-    private final ImageIcon backgroundImage;
+    private BufferedImage backgroundImage; // null until the loader has decoded it
+    // resize events restart this timer, so a window drag causes one rescale at the end
+    private final Timer resizeTimer;
+    private final ComponentListener resizeListener;
+    private int resizeGeneration;
 
 
     public Menu(JFrame parentFrame) {
         this.parentFrame = parentFrame;
         setLayout(new BorderLayout());
 
-        // Load the background image
-        backgroundImage = new ImageIcon(getClass().getClassLoader().getResource("images/bg_image.jpg"));
-
-        // Create a label with the background image
-        backgroundLabel = new JLabel(backgroundImage);
+        // Create a label for the background image, it is filled in once decoded
+        backgroundLabel = new JLabel();
+        backgroundLabel.setOpaque(true);
+        backgroundLabel.setBackground(Color.BLACK);
         backgroundLabel.setLayout(new GridBagLayout()); // for centering components
 
         JPanel menuPanel = new JPanel();
@@ -38,6 +49,12 @@ public class Menu extends JPanel {
 
         // Add buttons to the menu panel
         menuPanel.add(Box.createVerticalGlue());
+        if (SaveGame.exists()) {
+            JButton resumeButton = createMenuButton("Resume Game");
+            resumeButton.addActionListener(e -> resumeGame());
+            menuPanel.add(resumeButton);
+            menuPanel.add(Box.createVerticalStrut(20));
+        }
         menuPanel.add(playButton);
         menuPanel.add(Box.createVerticalStrut(20)); // Space between buttons
         menuPanel.add(highScoreButton);
@@ -56,16 +73,22 @@ public class Menu extends JPanel {
         // Add the backgroundLabel to the frame
         add(backgroundLabel, BorderLayout.CENTER);
 
-        // Add resize listener to parent frame
-        parentFrame.addComponentListener(new ComponentAdapter() {
+        // Add resize listener to parent frame, removed again when the menu goes away
+        resizeTimer = new Timer(100, e -> resizeBackground());
+        resizeTimer.setRepeats(false);
+        resizeListener = new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                resizeBackground();
+                resizeTimer.restart();
             }
-        });
+        };
+        parentFrame.addComponentListener(resizeListener);
 
-        // Initial resize to fit current frame size
-        resizeBackground();
+        // Initial resize to fit current frame size as soon as the image is decoded
+        Assets.image(Assets.BACKGROUND).thenAccept(image -> SwingUtilities.invokeLater(() -> {
+            backgroundImage = image;
+            resizeBackground();
+        }));
 
         setVisible(true);
     }
@@ -81,10 +104,19 @@ public class Menu extends JPanel {
         return button;
     }
 
+    // one tab for every board size, after the overall best
     private void showHighScores() {
-        HighScoreManager highScoreManager = new HighScoreManager();
-        List<HighScore> highScores = highScoreManager.getHighScores();
+        HighScoreManager highScoreManager = HighScoreManager.getInstance();
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("All", createHighScorePanel(highScoreManager.getHighScores()));
+        for (String option : SIZE_OPTIONS) {
+            tabs.addTab(option, createHighScorePanel(highScoreManager.getHighScores(GameState.sizeFor(option))));
+        }
+        JOptionPane.showMessageDialog(this, tabs, "High Scores", JOptionPane.INFORMATION_MESSAGE);
+    }
 
+    // high score table, also shown by Board at game over
+    static JPanel createHighScorePanel(List<HighScore> highScores) {
         //making highScore object a string and create new array of string with an appropriate  size
         String[] highScoreArray = highScores.stream().map(HighScore::toString).toArray(String[]::new);
 
@@ -105,8 +137,21 @@ public class Menu extends JPanel {
         highScorePanel.setBackground(Color.BLACK);
         highScorePanel.add(titleLabel, BorderLayout.NORTH);
         highScorePanel.add(new JScrollPane(highScoreList), BorderLayout.CENTER);
+        return highScorePanel;
+    }
 
-        JOptionPane.showMessageDialog(this, highScorePanel, "High Scores", JOptionPane.INFORMATION_MESSAGE);
+    // a save is resumed once, suspending again writes a new one
+    private void resumeGame() {
+        GameState state = SaveGame.load();
+        SaveGame.delete();
+        if (state == null) {
+            JOptionPane.showMessageDialog(this, "The saved game could not be loaded.");
+            return;
+        }
+        parentFrame.getContentPane().removeAll();
+        parentFrame.add(new GamePanel(state, parentFrame), BorderLayout.CENTER);
+        parentFrame.revalidate();
+        parentFrame.repaint();
     }
 
     private void startGame() {
@@ -114,11 +159,10 @@ public class Menu extends JPanel {
         JPanel panel = new JPanel(new GridLayout(0, 1));
         panel.add(new JLabel("Select Board Size:", SwingConstants.CENTER));
 
-        String[] colorOptions = {"Small", "Medium", "Large", "Extra-Large", "Huge"};
-        Color[] buttonColors = {Color.YELLOW, Color.GREEN, Color.ORANGE, Color.PINK, Color.CYAN};
+        Color[] buttonColors = {Color.YELLOW, Color.GREEN, Color.ORANGE, Color.PINK, Color.CYAN, Color.MAGENTA, Color.LIGHT_GRAY};
 
-        for (int i = 0; i < colorOptions.length; i++) {
-            String option = colorOptions[i];
+        for (int i = 0; i < SIZE_OPTIONS.length; i++) {
+            String option = SIZE_OPTIONS[i];
             JButton button = new JButton(option);
             button.setBackground(buttonColors[i]);
             button.setFont(new Font("Arial", Font.BOLD, 18));
@@ -143,11 +187,28 @@ public class Menu extends JPanel {
         // Show the dialog
         JOptionPane.showOptionDialog(this, panel, "Board Size", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, new Object[]{}, null);
     }
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        resizeTimer.stop();
+        parentFrame.removeComponentListener(resizeListener);
+    }
+
+    // scales on a loader thread, results of a resize that was overtaken by a newer one are dropped
     private void resizeBackground() {
         int width = parentFrame.getWidth();
         int height = parentFrame.getHeight();
-        Image scaledImage = backgroundImage.getImage().getScaledInstance(width, height, Image.SCALE_SMOOTH);
-        backgroundLabel.setIcon(new ImageIcon(scaledImage));
+        BufferedImage source = backgroundImage;
+        if (source == null || width <= 0 || height <= 0) {
+            return;
+        }
+        int generation = ++resizeGeneration;
+        Assets.async(() -> SpriteCache.scale(source, width, height)).thenAccept(scaled ->
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == resizeGeneration) {
+                        backgroundLabel.setIcon(new ImageIcon(scaled));
+                    }
+                }));
     }
 
 }
\ No newline at end of file
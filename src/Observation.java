@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * What controllers see of a game: wall, food, upgrade and ghost layers, where Pacman and every
+ * ghost are, and the upgrades in effect. All of it lives in primitive arrays owned by the
+ * observation and refilled in place each time a controller is asked, so observing allocates
+ * nothing. The arrays handed out may be read freely but writing to them changes nothing in the
+ * game, it is overwritten on the next fill. Layers are packed like BitGrid.copyTo, cell (x, y)
+ * is bit x * size + y.
+ */
+public class Observation {
+    private static final UpgradeType[] TYPES = UpgradeType.values();
+
+    private final int size;
+    private final long[] walls;
+    private final long[] food;
+    private final long[] upgrades;
+    private final long[] ghostCells;
+    private final int[] ghostX;
+    private final int[] ghostY;
+    private final int[] ghostDirection;
+    private final int[] ghostSpeed;
+    private final int[] effectStacks = new int[TYPES.length];
+    private final int[] effectTicks = new int[TYPES.length]; // ticks left of each effect
+    private int pacmanX, pacmanY, pacmanDirection, pacmanMoveTicks;
+    private int tick, lives, score;
+
+    public Observation(GameState state) {
+        size = state.getBoardSize();
+        int words = (size * size + 63) >>> 6;
+        walls = new long[words];
+        food = new long[words];
+        upgrades = new long[words];
+        ghostCells = new long[words];
+        int ghosts = state.getGhosts().size();
+        ghostX = new int[ghosts];
+        ghostY = new int[ghosts];
+        ghostDirection = new int[ghosts];
+        ghostSpeed = new int[ghosts];
+    }
+
+    /** Copies in the game as it is now, on the thread that steps it. */
+    public void fill(GameState state) {
+        state.copyWalls(walls); // they never change, but a controller may have written to the copy
+        state.copyFood(food);
+        state.copyUpgrades(upgrades);
+        tick = state.getTick();
+        lives = state.getLives();
+        score = state.getScore();
+
+        Pacman pacman = state.getPacman();
+        pacmanX = pacman.getX();
+        pacmanY = pacman.getY();
+        pacmanDirection = pacman.getCurrentDirection();
+        pacmanMoveTicks = pacman.getMoveTicks();
+
+        GhostSwarm ghosts = state.getGhosts();
+        Arrays.fill(ghostCells, 0L);
+        for (int i = 0; i < ghostX.length; i++) {
+            ghostX[i] = ghosts.getX(i);
+            ghostY[i] = ghosts.getY(i);
+            ghostDirection[i] = ghosts.getDirection(i);
+            ghostSpeed[i] = ghosts.getSpeed(i);
+            int bit = ghostX[i] * size + ghostY[i];
+            ghostCells[bit >>> 6] |= 1L << bit;
+        }
+
+        UpgradeEffects effects = state.getEffects();
+        for (UpgradeType type : TYPES) {
+            effectStacks[type.ordinal()] = effects.getStacks(type);
+            effectTicks[type.ordinal()] = effects.getRemainingTicks(type, tick);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /** True for walls and for everything outside the board, like GameState.isWall. */
+    public boolean isWall(int x, int y) {
+        return x < 0 || y < 0 || x >= size || y >= size || BitGrid.get(walls, size, x, y);
+    }
+
+    public boolean isFood(int x, int y) {
+        return BitGrid.get(food, size, x, y);
+    }
+
+    public boolean isUpgrade(int x, int y) {
+        return BitGrid.get(upgrades, size, x, y);
+    }
+
+    /** True when at least one ghost is on the cell. */
+    public boolean isGhost(int x, int y) {
+        return BitGrid.get(ghostCells, size, x, y);
+    }
+
+    public long[] wallWords() {
+        return walls;
+    }
+
+    public long[] foodWords() {
+        return food;
+    }
+
+    public long[] upgradeWords() {
+        return upgrades;
+    }
+
+    public long[] ghostWords() {
+        return ghostCells;
+    }
+
+    public int getPacmanX() {
+        return pacmanX;
+    }
+
+    public int getPacmanY() {
+        return pacmanY;
+    }
+
+    public int getPacmanDirection() {
+        return pacmanDirection;
+    }
+
+    /** Ticks Pacman takes per move right now, fewer with the speed upgrade. */
+    public int getPacmanMoveTicks() {
+        return pacmanMoveTicks;
+    }
+
+    public int getGhostCount() {
+        return ghostX.length;
+    }
+
+    /** Rows of every ghost, indexed by ghost. */
+    public int[] ghostX() {
+        return ghostX;
+    }
+
+    /** Columns of every ghost, indexed by ghost. */
+    public int[] ghostY() {
+        return ghostY;
+    }
+
+    /** Direction each ghost last moved in. */
+    public int[] ghostDirection() {
+        return ghostDirection;
+    }
+
+    /** Ticks between moves of each ghost. */
+    public int[] ghostSpeed() {
+        return ghostSpeed;
+    }
+
+    public int getStacks(UpgradeType type) {
+        return effectStacks[type.ordinal()];
+    }
+
+    /** Ticks until the effect ends, 0 when it is not active. */
+    public int getRemainingTicks(UpgradeType type) {
+        return effectTicks[type.ordinal()];
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Per cell index of what is standing where, so "is there a ghost or an upgrade
+ * at (x, y)" is an array lookup instead of a scan over every entity.
+ * Ghosts may share a cell so they are counted, a cell holds at most one upgrade.
+ * Upgrades are kept as their UpgradeType, so spawning one allocates nothing.
+ */
+public class OccupancyGrid {
+    private final int columns;
+    private final int[] ghosts;
+    private final int[] ghostSprites; // sprite of the last ghost that entered, what gets drawn on top
+    private final UpgradeType[] upgrades;
+    private final BitGrid upgradeCells; // same cells as upgrades, packed for snapshots
+
+    public OccupancyGrid(int rows, int columns) {
+        this.columns = columns;
+        this.ghosts = new int[rows * columns];
+        this.ghostSprites = new int[rows * columns];
+        this.upgrades = new UpgradeType[rows * columns];
+        this.upgradeCells = new BitGrid(rows, columns);
+    }
+
+    public int ghostsAt(int x, int y) {
+        return ghosts[x * columns + y];
+    }
+
+    public int ghostSpriteAt(int x, int y) {
+        return ghostSprites[x * columns + y];
+    }
+
+    public void addGhost(int x, int y, int sprite) {
+        ghosts[x * columns + y]++;
+        ghostSprites[x * columns + y] = sprite;
+    }
+
+    public void moveGhost(int fromX, int fromY, int toX, int toY, int sprite) {
+        ghosts[fromX * columns + fromY]--;
+        ghosts[toX * columns + toY]++;
+        ghostSprites[toX * columns + toY] = sprite;
+    }
+
+    public void removeGhost(int x, int y) {
+        ghosts[x * columns + y]--;
+    }
+
+    // only visits the cells holding an upgrade
+    public void clearUpgrades() {
+        for (int cell = upgradeCells.nextSet(0); cell >= 0; cell = upgradeCells.nextSet(cell + 1)) {
+            upgrades[cell] = null;
+        }
+        upgradeCells.clearAll();
+    }
+
+    /** Type of the upgrade at (x, y), or null if there is none. */
+    public UpgradeType upgradeAt(int x, int y) {
+        return upgrades[x * columns + y];
+    }
+
+    public void putUpgrade(int x, int y, UpgradeType type) {
+        upgrades[x * columns + y] = type;
+        upgradeCells.set(x, y);
+    }
+
+    /** Removes the upgrade at (x, y) and returns its type, or null if there was none. */
+    public UpgradeType removeUpgrade(int x, int y) {
+        int cell = x * columns + y;
+        UpgradeType type = upgrades[cell];
+        if (type != null) {
+            upgrades[cell] = null;
+            upgradeCells.clear(x, y);
+        }
+        return type;
+    }
+
+    public int getUpgradeCount() {
+        return upgradeCells.count();
+    }
+
+    public BitGrid getUpgradeCells() {
+        return upgradeCells;
+    }
+}
@@ -1,129 +1,75 @@
-import javax.swing.*;
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
-import java.net.URL;
+import java.nio.ByteBuffer;
 
-public class Pacman implements KeyListener, Runnable {
+public class Pacman {
     private int x, y;
     private int score;
-    private final Board board;
-    private int speed;
-    private boolean hasSpeedUpgrade;
-    private boolean hasExtraLifeUpgrade;
-    private boolean hasSlowDownGhostsUpgrade;
-    private boolean hasInvincibilityUpgrade;
-    private boolean hasDoubleScoreUpgrade;
-    private final ImageIcon[][] pacmanImages; // 0: up, 1: down, 2: left, 3: right
+    private final GameState board;
     private int currentDirection;
-    private int requestedDirection;
+    private final int[] turns = new int[MAX_TURNS]; // requested turns not taken yet, oldest first
+    private int turnCount;
     private boolean mouthOpen;
+    private int ticksSinceMove;
+    private int turnMovesLeft; // moves the oldest turn is still waited for
     private static final int BASE_SPEED = 1;
     private static final int UPGRADED_SPEED = 2;
-    private final Thread pacmanThread;
-
-    public Pacman(Board board) {
+    private static final int PELLET_POINTS = 10;
+    // ticks between moves at BASE_SPEED, divided by the current speed
+    private static final int MOVE_TICKS = 500 / GameState.TICK_MILLIS;
+    // a turn that can't be taken yet is kept for this many moves, so pressing it a cell
+    // or two before a junction still turns there, after that Pacman forgets about it
+    private static final int PRE_TURN_MOVES = 3;
+    // turns pressed in quick succession are taken one after the other, past this many the oldest is dropped
+    static final int MAX_TURNS = 3;
+    // bytes written by writeTo
+    static final int STATE_BYTES = (7 + MAX_TURNS) * 4 + 1;
+
+    public Pacman(GameState board) {
         this.board = board;
         resetPosition();
         this.score = 0;
-        this.speed = BASE_SPEED;
-        this.hasSpeedUpgrade = false;
-        this.hasExtraLifeUpgrade = false;
-        this.hasSlowDownGhostsUpgrade = false;
-        this.hasInvincibilityUpgrade = false;
-        this.hasDoubleScoreUpgrade = false;
-
-        // Load Pacman images
-        pacmanImages = new ImageIcon[4][2];
-        pacmanImages[2][0] = loadImage("pacman_up.png");      // Left
-        pacmanImages[2][1] = loadImage("pacman_up_closed.png");
-        pacmanImages[3][0] = loadImage("pacman_down.png");     // Right
-        pacmanImages[3][1] = loadImage("pacman_down_closed.png");
-        pacmanImages[0][0] = loadImage("pacman_left.png");        // Up
-        pacmanImages[0][1] = loadImage("pacman_left_closed.png");
-        pacmanImages[1][0] = loadImage("pacman_right.png");      // Down
-        pacmanImages[1][1] = loadImage("pacman_right_closed.png");
-
-        currentDirection = 1; // Initially facing right
-        requestedDirection = 1;
-        mouthOpen = true;
-
-        board.addKeyListener(this);
-        board.setFocusable(true);
-        board.requestFocusInWindow();
 
-        // Start the pacman thread
-        pacmanThread = new Thread(this);
-        pacmanThread.start();
-    }
-
-    private ImageIcon loadImage(String path) {
-        URL imageUrl = getClass().getClassLoader().getResource("images/" + path);
-        if (imageUrl == null) {
-            System.out.println("Could not find image: " + path);
-            return null;
-        }
-        return scaleImage(new ImageIcon(imageUrl));
-    }
-
-    private ImageIcon scaleImage(ImageIcon icon) {
-        int cellSize = board.getCellSize();
-        return new ImageIcon(icon.getImage().getScaledInstance(cellSize, cellSize, java.awt.Image.SCALE_SMOOTH));
+        currentDirection = GameState.RIGHT;
+        mouthOpen = true;
     }
 
     private void move() {
-        // First, try to move in the requested direction
-        int dx = 0, dy = 0;
-        boolean canMove = false;
-
-        switch (requestedDirection) {
-            case 0 -> dy = -1; // Up
-            case 1 -> dy = 1;  // Down
-            case 2 -> dx = -1; // Left
-            case 3 -> dx = 1;  // Right
-        }
-
-        int newX = x + dx;
-        int newY = y + dy;
+        // First, try to take the oldest requested turn
+        int direction = turnCount > 0 ? turns[0] : currentDirection;
+        int newX = x + stepX(direction);
+        int newY = y + stepY(direction);
 
         if (!board.isWall(newX, newY)) {
-            currentDirection = requestedDirection;
-            canMove = true;
-        }
-
-        if (!canMove) {
-            // If we can't move in the requested direction, move in the current direction
-            dx = 0;
-            dy = 0;
-            switch (currentDirection) {
-                case 0 -> dy = -1; // Up
-                case 1 -> dy = 1;  // Down
-                case 2 -> dx = -1; // Left
-                case 3 -> dx = 1;  // Right
+            currentDirection = direction;
+            if (turnCount > 0) {
+                nextTurn();
             }
-
-            newX = x + dx;
-            newY = y + dy;
+            x = newX;
+            y = newY;
+        } else {
+            if (turnCount > 0 && --turnMovesLeft <= 0) {
+                nextTurn(); // the turn never came up
+            }
+            // If we can't turn yet, move in the current direction
+            newX = x + stepX(currentDirection);
+            newY = y + stepY(currentDirection);
 
             if (!board.isWall(newX, newY)) {
                 x = newX;
                 y = newY;
             } else {
-                // If Pacman can't move, it should still face the requested direction with an open mouth
-                currentDirection = requestedDirection;
+                // If Pacman can't move, it should still face the requested turn with an open mouth
+                if (turnCount > 0) {
+                    currentDirection = turns[0];
+                    nextTurn();
+                }
                 mouthOpen = true;
             }
-        } else {
-            x = newX;
-            y = newY;
         }
 
         // Handle food and upgrades
         if (board.isFood(x, y)) {
             eatFood();
             board.removeFood(x, y);
-            if (!board.hasFood()) {
-                board.gameOver();
-            }
         }
         if (board.isUpgrade(x, y)) {
             board.applyUpgrade(this);
@@ -131,41 +77,45 @@ public class Pacman implements KeyListener, Runnable {
         }
     }
 
-    public void applyUpgrade(String upgradeType) {
-        switch (upgradeType) {
-            case "speed":
-                hasSpeedUpgrade = true;
-                speed = UPGRADED_SPEED;
-                break;
-            case "extraLife":
-                hasExtraLifeUpgrade = true;
-                board.incrementLives();
-                break;
-            case "slowDownGhosts":
-                hasSlowDownGhostsUpgrade = true;
-                break;
-            case "invincibility":
-                hasInvincibilityUpgrade = true;
-                break;
-            case "doubleScore":
-                hasDoubleScoreUpgrade = true;
-                break;
-            default:
-                break;
-        }
+    // x is the row, so up and down move along x and left and right along y
+    private static int stepX(int direction) {
+        return switch (direction) {
+            case GameState.UP -> -1;
+            case GameState.DOWN -> 1;
+            default -> 0;
+        };
     }
 
-    public void resetUpgrades() {
-        hasSpeedUpgrade = false;
-        hasExtraLifeUpgrade = false;
-        hasSlowDownGhostsUpgrade = false;
-        hasInvincibilityUpgrade = false;
-        hasDoubleScoreUpgrade = false;
-        speed = BASE_SPEED;
+    private static int stepY(int direction) {
+        return switch (direction) {
+            case GameState.LEFT -> -1;
+            case GameState.RIGHT -> 1;
+            default -> 0;
+        };
+    }
+
+    // everything about Pacman for saved games, the upgrades in effect are saved by UpgradeEffects
+    void writeTo(ByteBuffer out) {
+        out.putInt(x).putInt(y).putInt(score)
+                .putInt(currentDirection).putInt(ticksSinceMove).putInt(turnMovesLeft).putInt(turnCount);
+        for (int turn : turns) {
+            out.putInt(turn);
+        }
+        out.put((byte) (mouthOpen ? 1 : 0));
     }
 
-    public boolean hasInvincibilityUpgrade() {
-        return hasInvincibilityUpgrade;
+    void readFrom(ByteBuffer in) {
+        x = in.getInt();
+        y = in.getInt();
+        score = in.getInt();
+        currentDirection = in.getInt();
+        ticksSinceMove = in.getInt();
+        turnMovesLeft = in.getInt();
+        turnCount = in.getInt();
+        for (int i = 0; i < MAX_TURNS; i++) {
+            turns[i] = in.getInt();
+        }
+        mouthOpen = in.get() != 0;
     }
 
     public int getX() {
@@ -181,49 +131,65 @@ public class Pacman implements KeyListener, Runnable {
     }
 
     public void eatFood() {
-        score += hasDoubleScoreUpgrade ? 20 : 10;
+        score += board.getEffects().pelletPoints(PELLET_POINTS);
     }
 
     public void resetPosition() {
-        x = board.getBoardSize() / 2;
-        y = board.getBoardSize() / 2;
-        currentDirection = 3; // Reset facing right
-        requestedDirection = 3;
-        board.requestFocusInWindow(); // Ensure the board regains focus to receive key events
-    }
-
-    @Override
-    public void keyTyped(KeyEvent e) {}
-
-    @Override
-    public void keyPressed(KeyEvent e) {
-        int key = e.getKeyCode();
-        switch (key) {
-            case KeyEvent.VK_LEFT -> requestedDirection = 0; // Left
-            case KeyEvent.VK_RIGHT -> requestedDirection = 1; // Right
-            case KeyEvent.VK_UP -> requestedDirection = 2; // Up
-            case KeyEvent.VK_DOWN -> requestedDirection = 3; // Down
-        }
+        x = board.getMaze().getStartX();
+        y = board.getMaze().getStartY();
+        currentDirection = GameState.DOWN; // respawns head down, unlike the first spawn
+        turnCount = 0;
+        turnMovesLeft = 0;
     }
 
-    @Override
-    public void keyReleased(KeyEvent e) {}
-
-    @Override
-    public void run() {
-        while (!pacmanThread.isInterrupted()) {
-            mouthOpen = !mouthOpen; // Toggle mouth state for animation
-            move();
-            board.updateBoard();
-            try {
-                Thread.sleep(500 / speed);
-            } catch (InterruptedException e) {
-                pacmanThread.interrupt();
+    /** Queues a turn behind the ones requested before it that Pacman has not taken yet. */
+    public void setRequestedDirection(int direction) {
+        int last = turnCount > 0 ? turns[turnCount - 1] : currentDirection;
+        if (direction == last) {
+            if (turnCount == 1) {
+                turnMovesLeft = PRE_TURN_MOVES; // a held key keeps waiting for its turn
+            }
+            return;
+        }
+        if (turnCount == MAX_TURNS) {
+            nextTurn();
+        }
+        turns[turnCount++] = direction;
+        if (turnCount == 1) {
+            turnMovesLeft = PRE_TURN_MOVES;
+            // an open way is faced at once, so the press shows on the next frame, the step still waits for the move
+            if (!board.isWall(x + stepX(direction), y + stepY(direction))) {
+                currentDirection = direction;
             }
         }
     }
 
-    public ImageIcon getCurrentImage() {
-        return pacmanImages[currentDirection][mouthOpen ? 0 : 1];
+    // drops the oldest turn, the one after it gets the full wait
+    private void nextTurn() {
+        System.arraycopy(turns, 1, turns, 0, --turnCount);
+        turnMovesLeft = PRE_TURN_MOVES;
+    }
+
+    public int getCurrentDirection() {
+        return currentDirection;
+    }
+
+    /** Ticks one move takes at the current speed. */
+    public int getMoveTicks() {
+        return MOVE_TICKS / (board.getEffects().isActive(UpgradeType.SPEED) ? UPGRADED_SPEED : BASE_SPEED);
+    }
+
+    public boolean isMouthOpen() {
+        return mouthOpen;
+    }
+
+    // called by the game loop every tick, moves once every MOVE_TICKS / speed ticks
+    public void tick() {
+        if (++ticksSinceMove < getMoveTicks()) {
+            return;
+        }
+        ticksSinceMove = 0;
+        mouthOpen = !mouthOpen; // Toggle mouth state for animation
+        move();
     }
 }
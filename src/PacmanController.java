@@ -0,0 +1,11 @@
+/**
+ * Steers Pacman in place of the keyboard, see GameState.setPacmanController.
+ * Called on the thread that steps the game, once at the start of every tick.
+ */
+public interface PacmanController {
+    /**
+     * Direction to request this tick, GameState.LEFT..DOWN, or GameState.NO_INPUT to keep the
+     * turns requested before. The observation is only valid during the call and is refilled next tick.
+     */
+    int decide(Observation observation);
+}
@@ -0,0 +1,283 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Serial;
+
+/**
+ * Single custom-painted component for the maze.
+ * Walls, food and upgrades are drawn into an offscreen frame covering the cells inside the
+ * viewport, only cells that changed since the last snapshot get redrawn, so the cost of a
+ * frame follows the viewport size and not the maze size. Pacman and the ghosts are drawn on
+ * top on every paint at their in between positions, see FrameSnapshot, and Board repaints
+ * once per display refresh, so they glide while the simulation keeps its own slower tick.
+ * A camera keeps Pacman centered on boards larger than the window, pixel by pixel: the frame
+ * is drawn shifted by the part of a cell the camera is into it, and when the camera crosses
+ * into another cell the frame is shifted in place and only the newly exposed cells are painted.
+ * Everything in here runs on the EDT and only reads published FrameSnapshots.
+ */
+public class Playfield extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color STATS_BACKGROUND = new Color(0, 0, 0, 180);
+    private static final long TICK_NANOS = GameState.TICK_MILLIS * 1_000_000L;
+    // Pacman opens or closes his mouth this often while he is moving
+    private static final long MOUTH_NANOS = 125_000_000L;
+
+    private final Board board;
+    private final FrameBuffer frames;
+    private final int size;
+    private final int cellSize;
+
+    // viewport: viewRows x viewColumns cells starting at cell (originX, originY),
+    // one more each way than fit the component so a partly scrolled cell is always there
+    private BufferedImage frame;
+    private int viewRows, viewColumns;
+    private int originX, originY;
+    private int cameraTop, cameraLeft; // pixel of the maze in the component's top left corner
+    private FrameSnapshot shown;
+    private long shownInput; // press time of the last input counted as shown
+
+    // visible cells waiting to be redrawn into the frame, index = x * size + y
+    private final boolean[] dirty;
+    private final int[] dirtyQueue;
+    private int dirtyCount;
+
+    // what the offscreen frame currently shows, diffed against each new snapshot
+    private final long[] paintedFood;
+    private final long[] paintedUpgrades;
+
+    public Playfield(Board board, FrameBuffer frames, int size, int cellSize) {
+        this.board = board;
+        this.frames = frames;
+        this.size = size;
+        this.cellSize = cellSize;
+        this.dirty = new boolean[size * size];
+        this.dirtyQueue = new int[size * size];
+        this.paintedFood = new long[(size * size + 63) >>> 6];
+        this.paintedUpgrades = new long[paintedFood.length];
+        int pixels = Math.min(size * cellSize, Board.VIEWPORT_PIXELS);
+        setPreferredSize(new Dimension(pixels, pixels));
+        setBackground(Color.BLACK);
+        setOpaque(true);
+    }
+
+    private void markDirty(int x, int y) {
+        if (x < originX || y < originY || x >= originX + viewRows || y >= originY + viewColumns) {
+            return;
+        }
+        int index = x * size + y;
+        if (!dirty[index]) {
+            dirty[index] = true;
+            dirtyQueue[dirtyCount++] = index;
+        }
+    }
+
+    // rows x0..x1 and columns y0..y1 of the viewport, bounds exclusive
+    private void markDirty(int x0, int y0, int x1, int y1) {
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                markDirty(x, y);
+            }
+        }
+    }
+
+    private void markAllDirty() {
+        markDirty(originX, originY, originX + viewRows, originY + viewColumns);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        GameMetrics metrics = board.getMetrics();
+        long started = System.nanoTime();
+        GameMetrics.PaintEvent event = metrics.beginPaint();
+        super.paintComponent(g);
+        boolean newFrame = frames.hasNewFrame() || shown == null;
+        if (newFrame) {
+            shown = frames.latest();
+        }
+        layoutViewport();
+        if (newFrame) {
+            diff(shown);
+            board.showHud(shown);
+        }
+
+        // the tick being drawn, plus the part of the next one that has passed since it was published
+        double at = shown.getTick() + Math.min(1.0, (double) (started - shown.getPublishedNanos()) / TICK_NANOS);
+        moveCamera(shown.getPacmanRow(at), shown.getPacmanColumn(at));
+        int painted = flushDirtyCells(shown);
+        g.drawImage(frame, originY * cellSize - cameraLeft, originX * cellSize - cameraTop, null);
+        drawEntities(g, shown, at, started);
+
+        if (newFrame && shown.getInputNanos() != 0 && shown.getInputNanos() != shownInput) {
+            shownInput = shown.getInputNanos();
+            metrics.inputShown(event, System.nanoTime() - shownInput);
+        }
+        if (board.isStatsShown()) {
+            paintStats(g, metrics.overlayLines());
+        }
+        Toolkit.getDefaultToolkit().sync(); // some window systems hold drawing back otherwise, which stutters
+        metrics.endPaint(event, System.nanoTime() - started, painted);
+    }
+
+    // Pacman and the ghosts at their sliding positions, ghosts later in the swarm on top
+    private void drawEntities(Graphics g, FrameSnapshot snapshot, double at, long now) {
+        boolean mouthOpen = !snapshot.isPacmanMoving(at) || (now / MOUTH_NANOS & 1) == 0;
+        drawSprite(g, board.getPacmanImage(snapshot.getPacmanDirection(), mouthOpen),
+                snapshot.getPacmanRow(at), snapshot.getPacmanColumn(at));
+        for (int i = 0; i < snapshot.getGhostCount(); i++) {
+            drawSprite(g, board.getGhostImage(snapshot.getGhostSprite(i)),
+                    snapshot.getGhostRow(i, at), snapshot.getGhostColumn(i, at));
+        }
+    }
+
+    // sprites are already scaled to the cell size, the ones outside the component are skipped
+    private void drawSprite(Graphics g, Image sprite, double row, double column) {
+        int px = (int) Math.round(column * cellSize) - cameraLeft;
+        int py = (int) Math.round(row * cellSize) - cameraTop;
+        if (sprite == null || px <= -cellSize || py <= -cellSize || px >= getWidth() || py >= getHeight()) {
+            return;
+        }
+        g.drawImage(sprite, px, py, null);
+    }
+
+    // metrics overlay in the top left corner, on top of the maze
+    private void paintStats(Graphics g, String[] lines) {
+        g.setFont(STATS_FONT);
+        int lineHeight = g.getFontMetrics().getHeight();
+        g.setColor(STATS_BACKGROUND);
+        g.fillRect(0, 0, getWidth(), lineHeight * lines.length + 8);
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 6, 4 + lineHeight * (i + 1) - g.getFontMetrics().getDescent());
+        }
+    }
+
+    // sizes the frame to the cells that fit the component, plus one to scroll into
+    private void layoutViewport() {
+        int rows = Math.min(size, Math.max(1, (getHeight() + cellSize - 1) / cellSize + 1));
+        int columns = Math.min(size, Math.max(1, (getWidth() + cellSize - 1) / cellSize + 1));
+        if (frame != null && rows == viewRows && columns == viewColumns) {
+            return;
+        }
+        viewRows = rows;
+        viewColumns = columns;
+        frame = new BufferedImage(columns * cellSize, rows * cellSize, BufferedImage.TYPE_INT_RGB);
+        originX = clamp(originX, size - rows);
+        originY = clamp(originY, size - columns);
+        markAllDirty();
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    /*
+     * Centers the camera on Pacman, at row and column in cells, as far as the maze edges allow.
+     * When that moves the viewport to other cells, the part of the frame that stays visible
+     * is shifted with copyArea and only the cells scrolled in get painted.
+     */
+    private void moveCamera(double row, double column) {
+        cameraTop = clamp((int) Math.round((row + 0.5) * cellSize) - getHeight() / 2, size * cellSize - getHeight());
+        cameraLeft = clamp((int) Math.round((column + 0.5) * cellSize) - getWidth() / 2, size * cellSize - getWidth());
+        int x = clamp(cameraTop / cellSize, size - viewRows);
+        int y = clamp(cameraLeft / cellSize, size - viewColumns);
+        int dx = x - originX;
+        int dy = y - originY;
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        originX = x;
+        originY = y;
+        if (Math.abs(dx) >= viewRows || Math.abs(dy) >= viewColumns) {
+            markAllDirty();
+            return;
+        }
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.copyArea(0, 0, frame.getWidth(), frame.getHeight(), -dy * cellSize, -dx * cellSize);
+        } finally {
+            g.dispose();
+        }
+        int endX = originX + viewRows;
+        int endY = originY + viewColumns;
+        if (dx > 0) {
+            markDirty(endX - dx, originY, endX, endY);
+        } else if (dx < 0) {
+            markDirty(originX, originY, originX - dx, endY);
+        }
+        if (dy > 0) {
+            markDirty(originX, endY - dy, endX, endY);
+        } else if (dy < 0) {
+            markDirty(originX, originY, endX, originY - dy);
+        }
+    }
+
+    // marks every visible cell that looks different in the snapshot than in the painted frame
+    private void diff(FrameSnapshot snapshot) {
+        // only the words of the visible rows, cells outside are repainted anyway when they scroll in
+        int fromWord = (originX * size) >>> 6;
+        int toWord = ((originX + viewRows) * size + 63) >>> 6;
+        diffLayer(snapshot.foodWords(), paintedFood, fromWord, toWord);
+        diffLayer(snapshot.upgradeWords(), paintedUpgrades, fromWord, toWord);
+    }
+
+    // marks the cells whose bit differs between the two layers and brings the painted copy up to date
+    private void diffLayer(long[] current, long[] paintedLayer, int fromWord, int toWord) {
+        for (int w = fromWord; w < toWord; w++) {
+            long changed = current[w] ^ paintedLayer[w];
+            while (changed != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(changed);
+                markDirty(bit / size, bit % size);
+                changed &= changed - 1;
+            }
+            paintedLayer[w] = current[w];
+        }
+    }
+
+    // redraws the queued cells into the frame, returns how many
+    private int flushDirtyCells(FrameSnapshot snapshot) {
+        int flushed = dirtyCount;
+        if (dirtyCount == 0) {
+            return 0;
+        }
+        Graphics2D g = frame.createGraphics();
+        try {
+            for (int i = 0; i < dirtyCount; i++) {
+                int index = dirtyQueue[i];
+                dirty[index] = false;
+                paintCell(g, snapshot, index / size, index % size);
+            }
+            dirtyCount = 0;
+        } finally {
+            g.dispose();
+        }
+        return flushed;
+    }
+
+    private void paintCell(Graphics2D g, FrameSnapshot snapshot, int x, int y) {
+        // x is the row and y the column, same as the old GridLayout of cells
+        int px = (y - originY) * cellSize;
+        int py = (x - originX) * cellSize;
+
+        if (snapshot.isWall(x, y)) {
+            g.setColor(Color.BLUE);
+            g.fillRect(px, py, cellSize, cellSize);
+            return;
+        }
+        g.setColor(Color.BLACK);
+        g.fillRect(px, py, cellSize, cellSize);
+
+        if (snapshot.isUpgrade(x, y)) {
+            Image sprite = board.getUpgradeImage();
+            if (sprite != null) {
+                g.drawImage(sprite, px, py, null);
+            }
+        } else if (snapshot.isFood(x, y)) {
+            int dot = Math.max(2, cellSize / 8);
+            g.setColor(Color.WHITE);
+            g.fillOval(px + (cellSize - dot) / 2, py + (cellSize - dot) / 2, dot, dot);
+        }
+    }
+}
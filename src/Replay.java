@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A game recorded by ReplayRecorder, loaded into memory and played back headless.
+ * Any tick can be reached by restoring the nearest keyframe before it and stepping
+ * on from there, a recording cut short by a crash plays up to where it stops.
+ *
+ * Usage: java Replay file.rpl [tick]
+ * plays the file at full speed to the end or to the given tick and prints the result.
+ */
+public class Replay {
+    private final int size;
+    private final int ghostCount;
+    private final long seed;
+    private final int firstTick;
+
+    // inputs in tick order
+    private int[] inputTicks = new int[64];
+    private byte[] inputs = new byte[64];
+    private int inputCount;
+    private int[] pressed = new int[4]; // the inputs of the tick being played
+
+    // keyframes in tick order
+    private int[] keyframeTicks = new int[8];
+    private byte[][] keyframes = new byte[8][];
+    private int keyframeCount;
+
+    private boolean ended;
+    private int endTick, endScore, endLives;
+
+    private Replay(ByteBuffer in) throws IOException {
+        if (in.getInt() != ReplayRecorder.MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        short version = in.getShort();
+        if (version < ReplayRecorder.OLDEST_VERSION || version > ReplayRecorder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        size = in.getInt();
+        ghostCount = in.getInt();
+        seed = in.getLong();
+        firstTick = in.getInt();
+        try {
+            readBlocks(in);
+        } catch (BufferUnderflowException e) {
+            // the recording was cut off, keep what was complete
+        }
+    }
+
+    public static Replay load(Path file) throws IOException {
+        return new Replay(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    private void readBlocks(ByteBuffer in) throws IOException {
+        int tick = firstTick;
+        while (in.hasRemaining()) {
+            int tag = in.get();
+            switch (tag) {
+                case ReplayRecorder.INPUT -> {
+                    tick += readVarint(in);
+                    byte input = in.get();
+                    if (inputCount == inputTicks.length) {
+                        inputTicks = Arrays.copyOf(inputTicks, inputCount * 2);
+                        inputs = Arrays.copyOf(inputs, inputCount * 2);
+                    }
+                    inputTicks[inputCount] = tick;
+                    inputs[inputCount++] = input;
+                }
+                case ReplayRecorder.KEYFRAME -> {
+                    int keyframeTick = readVarint(in);
+                    byte[] state = new byte[in.getInt()];
+                    in.get(state);
+                    if (keyframeCount == keyframeTicks.length) {
+                        keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+                        keyframes = Arrays.copyOf(keyframes, keyframeCount * 2);
+                    }
+                    keyframeTicks[keyframeCount] = keyframeTick;
+                    keyframes[keyframeCount++] = state;
+                }
+                case ReplayRecorder.END -> {
+                    endTick = in.getInt();
+                    endScore = in.getInt();
+                    endLives = in.getInt();
+                    ended = true;
+                    return;
+                }
+                default -> throw new IOException("Broken replay block " + tag);
+            }
+        }
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /** The game as it was at the start of the recording, resumed games start from their first keyframe. */
+    public GameState start() {
+        if (firstTick != 0 && keyframeCount > 0) {
+            return GameState.fromState(ByteBuffer.wrap(keyframes[0]));
+        }
+        return new GameState(size, ghostCount, seed);
+    }
+
+    /** The game as it was after the given tick, or at the end of the recording if that comes first. */
+    public GameState seek(int tick) {
+        tick = Math.max(firstTick, Math.min(tick, getLastTick()));
+        int k = Arrays.binarySearch(keyframeTicks, 0, keyframeCount, tick);
+        if (k < 0) {
+            k = -k - 2; // the last keyframe before tick
+        }
+        GameState state = k >= 0 ? GameState.fromState(ByteBuffer.wrap(keyframes[k])) : start();
+        play(state, tick);
+        return state;
+    }
+
+    /** Steps state with the recorded inputs until it reaches toTick or the game is over. */
+    public void play(GameState state, int toTick) {
+        int next = firstInputAt(state.getTick());
+        while (state.getTick() < toTick && !state.isGameOver()) {
+            int count = 0;
+            while (next < inputCount && inputTicks[next] == state.getTick()) {
+                if (count == pressed.length) {
+                    pressed = Arrays.copyOf(pressed, count * 2);
+                }
+                pressed[count++] = inputs[next++];
+            }
+            state.step(pressed, count);
+        }
+    }
+
+    // index of the first input at or after tick, a tick can have several
+    private int firstInputAt(int tick) {
+        int low = 0, high = inputCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (inputTicks[mid] < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Last tick of the recording, from its end block or else from the last input or keyframe. */
+    public int getLastTick() {
+        if (ended) {
+            return endTick;
+        }
+        int last = inputCount > 0 ? inputTicks[inputCount - 1] + 1 : firstTick;
+        return keyframeCount > 0 ? Math.max(last, keyframeTicks[keyframeCount - 1]) : last;
+    }
+
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    /** True if state matches the score and lives written when the recording ended. */
+    public boolean matchesEnd(GameState state) {
+        return ended && state.getTick() == endTick && state.getScore() == endScore && state.getLives() == endLives;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Replay file.rpl [tick]");
+            return;
+        }
+        Replay replay = load(Paths.get(args[0]));
+        int tick = args.length > 1 ? Integer.parseInt(args[1]) : replay.getLastTick();
+        long started = System.nanoTime();
+        GameState state = replay.seek(tick);
+        double millis = (System.nanoTime() - started) / 1e6;
+        System.out.printf("tick %d of %d: score %d, lives %d, food left %d, game over %b (%.1f ms, %d inputs, %d keyframes)%n",
+                state.getTick(), replay.getLastTick(), state.getScore(), state.getLives(), state.getFoodLeft(),
+                state.isGameOver(), millis, replay.getInputCount(), replay.getKeyframeCount());
+        if (replay.hasEnded() && tick >= replay.getLastTick()) {
+            System.out.println(replay.matchesEnd(state) ? "matches the recorded end" : "DIFFERS from the recorded end");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records a game so Replay can run it again tick for tick.
+ *
+ * File layout: a header [int magic][short version][int size][int ghost count][long seed]
+ * [int first tick], then blocks starting with a tag byte:
+ * INPUT  [varint ticks since the previous input][byte direction], only ticks with a key press,
+ *        several in one tick in the order they were pressed,
+ * KEYFRAME [varint tick][int length][GameState.writeState bytes], every KEYFRAME_TICKS,
+ * END [int tick][int score][int lives], once the game is over or left.
+ * The seed gives the maze and every random draw, so inputs are all a replay needs,
+ * keyframes are only there to jump into the middle of a long game. A game resumed from
+ * a save starts past tick 0, its recording opens with a keyframe of the resumed state.
+ *
+ * Called from the game loop thread, close may come from the EDT.
+ */
+public class ReplayRecorder {
+    static final int MAGIC = 0x504D5250; // "PMRP"
+    static final short VERSION = 6;
+    // older games had upgrades that never ran out, turns that were never forgotten,
+    // ghosts that kept catching Pacman on his start cell and kept only the newest of several
+    // presses in a tick, they play differently now and can't be replayed
+    static final short OLDEST_VERSION = 6;
+    static final int INPUT = 1;
+    static final int KEYFRAME = 2;
+    static final int END = 3;
+    // one minute of play between keyframes
+    public static final int KEYFRAME_TICKS = 60_000 / GameState.TICK_MILLIS;
+
+    // the newest games only, -Dpacman.replays=off records none
+    private static final RollingDirectory REPLAYS = new RollingDirectory("replays", ".rpl", 100);
+
+    private final DataOutputStream out;
+    private ByteBuffer keyframe = ByteBuffer.allocate(0);
+    private int lastInputTick;
+    private boolean closed;
+
+    public ReplayRecorder(Path file, GameState state) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(state.getBoardSize());
+        out.writeInt(state.getGhosts().size());
+        out.writeLong(state.getSeed());
+        out.writeInt(state.getTick());
+        lastInputTick = state.getTick();
+        if (state.getTick() != 0) {
+            writeKeyframe(state);
+        }
+    }
+
+    /** A recorder for a new file under replays/, or null if replays are off or it can't be created. */
+    public static ReplayRecorder open(GameState state) {
+        if (!REPLAYS.isEnabled()) {
+            return null;
+        }
+        try {
+            Path file = REPLAYS.newFile(System.currentTimeMillis() + "-" + state.getBoardSize());
+            return new ReplayRecorder(file, state);
+        } catch (IOException e) {
+            System.out.println("Not recording a replay: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Records the input about to be passed to state.step, tick being state.getTick() before the step. */
+    public synchronized void record(int tick, int input) {
+        if (closed || input == GameState.NO_INPUT) {
+            return;
+        }
+        try {
+            out.writeByte(INPUT);
+            writeVarint(tick - lastInputTick);
+            out.writeByte(input);
+            lastInputTick = tick;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Called after every step, writes a keyframe when one is due. */
+    public synchronized void stepped(GameState state) {
+        if (closed || state.getTick() % KEYFRAME_TICKS != 0) {
+            return;
+        }
+        try {
+            writeKeyframe(state);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeKeyframe(GameState state) throws IOException {
+        int bytes = state.stateBytes();
+        if (keyframe.capacity() < bytes) {
+            keyframe = ByteBuffer.allocate(bytes * 2);
+        }
+        keyframe.clear();
+        state.writeState(keyframe);
+        out.writeByte(KEYFRAME);
+        writeVarint(state.getTick());
+        out.writeInt(keyframe.position());
+        out.write(keyframe.array(), 0, keyframe.position());
+    }
+
+    /** Writes the end block and closes the file, later calls do nothing. */
+    public synchronized void close(GameState state) {
+        if (closed) {
+            return;
+        }
+        try {
+            out.writeByte(END);
+            out.writeInt(state.getTick());
+            out.writeInt(state.getScore());
+            out.writeInt(state.getLives());
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Could not finish the replay: " + e.getMessage());
+        }
+        closed = true;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // a broken replay must not take the game down with it
+    private void fail(IOException e) {
+        System.out.println("Stopped recording the replay: " + e.getMessage());
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // already failing
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A directory holding one file per game, such as replays/, kept to the newest few files.
+ * File names start with the time they were made, so sorting by name sorts by age.
+ * The system property pacman.NAME=off turns writing them off, pacman.NAME.keep=N keeps N.
+ */
+final class RollingDirectory {
+    private final Path directory;
+    private final String suffix;
+    private final boolean enabled;
+    private final int keep;
+
+    RollingDirectory(String name, String suffix, int defaultKeep) {
+        this.directory = Paths.get(name);
+        this.suffix = suffix;
+        this.enabled = !"off".equalsIgnoreCase(System.getProperty("pacman." + name));
+        this.keep = Math.max(1, Integer.getInteger("pacman." + name + ".keep", defaultKeep));
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Where to write a new file starting with prefix, the oldest files are deleted to make room for it. */
+    Path newFile(String prefix) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+        for (int i = 0; i <= files.size() - keep; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+        return directory.resolve(prefix + suffix);
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * The one suspended game, kept in savegame.dat.
+ *
+ * File layout: [int magic][short version][short unused][int length][int crc32][state],
+ * the state being GameState.writeState. Saving copies the state into memory on the
+ * thread that runs the game, which takes microseconds, and leaves the disk to a
+ * background thread. The file is written next to the old one and renamed over it,
+ * so a crash never leaves half a save behind.
+ */
+public final class SaveGame {
+    private static final int MAGIC = 0x504D5356; // "PMSV"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final Path SAVE_FILE = Paths.get("savegame.dat");
+
+    // one writer thread, so saves reach the disk in the order they were taken
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "save-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SaveGame() {
+    }
+
+    /**
+     * Copies the game right away and writes it in the background.
+     * Call on the thread that steps the game, between two steps.
+     */
+    public static CompletableFuture<Void> save(GameState state) {
+        ByteBuffer file = ByteBuffer.allocate(HEADER_BYTES + state.stateBytes());
+        file.position(HEADER_BYTES);
+        state.writeState(file);
+        int length = file.position() - HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(file.array(), HEADER_BYTES, length);
+        file.putInt(0, MAGIC).putShort(4, VERSION).putShort(6, (short) 0)
+                .putInt(8, length).putInt(12, (int) crc.getValue());
+        file.flip();
+        return CompletableFuture.runAsync(() -> write(file), WRITER);
+    }
+
+    private static void write(ByteBuffer file) {
+        Path temp = SAVE_FILE.resolveSibling(SAVE_FILE.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (file.hasRemaining()) {
+                out.write(file);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save the game", e);
+        }
+        try {
+            Files.move(temp, SAVE_FILE, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save the game", e);
+        }
+    }
+
+    public static boolean exists() {
+        return Files.exists(SAVE_FILE);
+    }
+
+    /** The saved game, or null if there is none or it can't be read. */
+    public static GameState load() {
+        try {
+            if (!exists()) {
+                return null;
+            }
+            ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(SAVE_FILE));
+            if (file.remaining() < HEADER_BYTES || file.getInt() != MAGIC) {
+                throw new IOException("not a saved game");
+            }
+            short version = file.getShort();
+            if (version > VERSION) {
+                throw new IOException("saved by a newer version of the game");
+            }
+            file.getShort();
+            int length = file.getInt();
+            int checksum = file.getInt();
+            if (length != file.remaining()) {
+                throw new IOException("file is incomplete");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(file.array(), HEADER_BYTES, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("checksum does not match");
+            }
+            return GameState.fromState(file);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not load the saved game: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Drops the saved game, once it has been resumed or played to the end. */
+    public static void delete() {
+        WRITER.execute(() -> {
+            try {
+                Files.deleteIfExists(SAVE_FILE);
+            } catch (IOException e) {
+                System.out.println("Could not delete the saved game: " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,371 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append only binary log of every game played, with the best scores kept in memory.
+ *
+ * File layout: an 8 byte header (magic, format version) followed by records of
+ * [int payload length][int crc32 of payload][payload], the payload being
+ * [long time][int score][short board size][short name length][name as UTF-8].
+ * A record cut short by a crash fails its length or checksum check, loading stops
+ * there and the broken tail is cut off by the next compaction, nothing before it is lost.
+ *
+ * Loading maps the file and walks it once, only the names of records that make it
+ * into the top list are decoded. Compaction writes the kept records to a temporary
+ * file and renames it over the log in one atomic step.
+ *
+ * Several game instances can share one log. Every append, refresh and compaction holds
+ * an exclusive lock on a sibling ".lock" file (the log itself gets replaced by compaction,
+ * so it can't carry the lock) and first catches up with whatever the others wrote.
+ */
+public class ScoreStore {
+    private static final int MAGIC = 0x504D4853; // "PMHS"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int FIXED_PAYLOAD_BYTES = 16;
+    private static final int MAX_NAME_BYTES = 1024;
+    private static final long MAP_WINDOW = 1L << 30;
+
+    public static final int TOP_SIZE = 10;
+
+    private final Path file;
+    private final int retainRecords;
+    private final long mapWindow;     // most of the file mapped at once
+    private final FileChannel lockChannel;
+    private FileChannel channel;
+    private Object fileKey;           // identity of the file channel is open on, changes when compacted
+    private long validBytes;          // end of the last record that checked out
+    private boolean needsCompaction;  // broken tail or an older format on disk
+    private long recordCount;
+    private final List<HighScore> top = new ArrayList<>(TOP_SIZE + 1);
+    private final Map<Integer, List<HighScore>> topBySize = new HashMap<>();
+
+    /**
+     * @param retainRecords history kept by compaction, the oldest records beyond this are
+     *                      dropped unless they are still in the top list
+     */
+    public ScoreStore(Path file, int retainRecords) throws IOException {
+        this(file, retainRecords, MAP_WINDOW);
+    }
+
+    // a small mapWindow lets tests walk records across window boundaries without a huge file
+    ScoreStore(Path file, int retainRecords, long mapWindow) throws IOException {
+        this.file = file;
+        this.retainRecords = retainRecords;
+        this.mapWindow = mapWindow;
+        this.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = lockChannel.lock();
+        try {
+            open();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = fileKey();
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+            channel.truncate(0);
+            channel.write(header.flip(), 0);
+            channel.force(true);
+        }
+        load();
+        if (needsCompaction) {
+            compactLocked();
+        }
+    }
+
+    private Object fileKey() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    private void load() throws IOException {
+        top.clear();
+        topBySize.clear();
+        recordCount = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a score file: " + file);
+        }
+        short version = header.getShort();
+        if (version > VERSION) {
+            throw new IOException("Score file version " + version + " is newer than this game");
+        }
+        needsCompaction = version < VERSION;
+        scan(HEADER_BYTES);
+    }
+
+    // indexes the records from position to the end of the file
+    private void scan(long position) throws IOException {
+        long size = channel.size();
+        CRC32 crc = new CRC32();
+        while (position < size) {
+            long windowBytes = Math.min(mapWindow, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowBytes);
+            int consumed = 0;
+            int recordBytes;
+            while ((recordBytes = readRecord(window, consumed, crc)) > 0) {
+                consumed += recordBytes;
+            }
+            position += consumed;
+            if (consumed == 0 || position - consumed + windowBytes == size) {
+                // reached the end of the file, whatever is left over is a broken tail
+                break;
+            }
+        }
+        if (position < size) {
+            needsCompaction = true;
+        }
+        validBytes = position;
+    }
+
+    /**
+     * Checks and indexes the record at offset, returns its size in bytes,
+     * or 0 if there is no whole valid record there.
+     */
+    private int readRecord(ByteBuffer buffer, int offset, CRC32 crc) {
+        if (buffer.capacity() - offset < RECORD_HEADER_BYTES) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        int checksum = buffer.getInt(offset + 4);
+        if (length < FIXED_PAYLOAD_BYTES || length > FIXED_PAYLOAD_BYTES + MAX_NAME_BYTES
+                || buffer.capacity() - offset - RECORD_HEADER_BYTES < length) {
+            return 0;
+        }
+        int payload = offset + RECORD_HEADER_BYTES;
+        crc.reset();
+        crc.update(buffer.slice(payload, length));
+        if ((int) crc.getValue() != checksum) {
+            return 0;
+        }
+        long time = buffer.getLong(payload);
+        int score = buffer.getInt(payload + 8);
+        int boardSize = buffer.getShort(payload + 12);
+        int nameLength = buffer.getShort(payload + 14);
+        if (nameLength != length - FIXED_PAYLOAD_BYTES) {
+            return 0;
+        }
+        recordCount++;
+        List<HighScore> sizeTop = topBySize.computeIfAbsent(boardSize, k -> new ArrayList<>(TOP_SIZE + 1));
+        if (qualifies(top, score) || qualifies(sizeTop, score)) {
+            byte[] name = new byte[nameLength];
+            buffer.get(payload + FIXED_PAYLOAD_BYTES, name);
+            HighScore highScore = new HighScore(new String(name, StandardCharsets.UTF_8), score, boardSize, time);
+            insert(top, highScore);
+            insert(sizeTop, highScore);
+        }
+        return RECORD_HEADER_BYTES + length;
+    }
+
+    private static boolean qualifies(List<HighScore> list, int score) {
+        return list.size() < TOP_SIZE || score > list.get(list.size() - 1).getScore();
+    }
+
+    // keeps list sorted best first, on equal scores the earlier game stays ahead
+    private static void insert(List<HighScore> list, HighScore score) {
+        if (!qualifies(list, score.getScore())) {
+            return;
+        }
+        int i = list.size();
+        while (i > 0 && list.get(i - 1).getScore() < score.getScore()) {
+            i--;
+        }
+        list.add(i, score);
+        if (list.size() > TOP_SIZE) {
+            list.remove(TOP_SIZE);
+        }
+    }
+
+    /**
+     * Picks up what other processes did to the log since we last looked,
+     * returns true if anything changed. Call with the file lock held.
+     */
+    private boolean catchUp() throws IOException {
+        Object key = fileKey();
+        if (key == null ? channel.size() < validBytes : !key.equals(fileKey)) {
+            // another instance compacted, its rename left our channel on the old file
+            channel.close();
+            open();
+            return true;
+        }
+        if (channel.size() == validBytes) {
+            return false;
+        }
+        scan(validBytes);
+        if (needsCompaction) {
+            compactLocked();
+        }
+        return true;
+    }
+
+    /** Reloads changes made by other game instances, returns true if there were any. */
+    public synchronized boolean refresh() throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            return catchUp();
+        } finally {
+            lock.release();
+        }
+    }
+
+    /** Appends a finished game and flushes it to disk before returning. */
+    public synchronized void append(String name, int score, int boardSize) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name too long");
+        }
+        if (boardSize < 0 || boardSize > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Board size " + boardSize + " does not fit the score file");
+        }
+        long time = System.currentTimeMillis();
+        ByteBuffer record = encode(time, score, boardSize, nameBytes);
+        int recordBytes = record.remaining();
+        FileLock lock = lockChannel.lock();
+        try {
+            catchUp();
+            while (record.hasRemaining()) {
+                channel.write(record, validBytes + recordBytes - record.remaining());
+            }
+            channel.force(false);
+            validBytes += recordBytes;
+            recordCount++;
+            HighScore highScore = new HighScore(name, score, boardSize, time);
+            insert(top, highScore);
+            insert(topBySize.computeIfAbsent(boardSize, k -> new ArrayList<>(TOP_SIZE + 1)), highScore);
+            if (recordCount > retainRecords + retainRecords / 4) {
+                compactLocked();
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    private static ByteBuffer encode(long time, int score, int boardSize, byte[] name) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + FIXED_PAYLOAD_BYTES + name.length);
+        record.putInt(FIXED_PAYLOAD_BYTES + name.length).putInt(0)
+                .putLong(time).putInt(score).putShort((short) boardSize).putShort((short) name.length).put(name);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, FIXED_PAYLOAD_BYTES + name.length);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /** The best TOP_SIZE games, best first. */
+    public synchronized List<HighScore> top() {
+        return new ArrayList<>(top);
+    }
+
+    /** The best TOP_SIZE games played on a board of this size, best first. */
+    public synchronized List<HighScore> top(int boardSize) {
+        List<HighScore> sizeTop = topBySize.get(boardSize);
+        return sizeTop != null ? new ArrayList<>(sizeTop) : new ArrayList<>();
+    }
+
+    public synchronized long size() {
+        return recordCount;
+    }
+
+    /**
+     * Rewrites the log without its broken tail, in the current format, keeping the newest
+     * retainRecords records plus the current top lists. The new file replaces the old one
+     * with an atomic rename, so a crash leaves either the old or the new log.
+     */
+    public synchronized void compact() throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            catchUp();
+            compactLocked();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long drop = Math.max(0, recordCount - retainRecords);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip());
+            long position = HEADER_BYTES;
+            long index = 0;
+            while (position < validBytes) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindow, validBytes - position));
+                int offset = 0;
+                while (window.capacity() - offset >= RECORD_HEADER_BYTES) {
+                    int length = window.getInt(offset);
+                    int recordBytes = RECORD_HEADER_BYTES + length;
+                    if (window.capacity() - offset < recordBytes) {
+                        break; // continues in the next window
+                    }
+                    int score = window.getInt(offset + RECORD_HEADER_BYTES + 8);
+                    int boardSize = window.getShort(offset + RECORD_HEADER_BYTES + 12);
+                    if (index++ >= drop || keptForTop(top, score) || keptForTop(topBySize.get(boardSize), score)) {
+                        out.write(window.slice(offset, recordBytes));
+                    }
+                    offset += recordBytes;
+                }
+                if (offset == 0) {
+                    break;
+                }
+                position += offset;
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = fileKey();
+        load();
+    }
+
+    // old records scoring at least as well as the last of a full top list survive compaction
+    private static boolean keptForTop(List<HighScore> list, int score) {
+        return list != null && list.size() == TOP_SIZE && score >= list.get(TOP_SIZE - 1).getScore();
+    }
+
+    /**
+     * Copies the scores of the old ObjectOutputStream high score file into this store.
+     * Unreadable legacy files are skipped, they used to be reset on error anyway.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void importLegacy(Path legacyFile) throws IOException {
+        List<HighScore> legacy;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacyFile.toFile()))) {
+            legacy = (List<HighScore>) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Could not import old high score file, skipping it.");
+            return;
+        }
+        for (HighScore score : legacy) {
+            append(score.getName(), score.getScore(), score.getBoardSize());
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        channel.close();
+        lockChannel.close();
+    }
+}
@@ -0,0 +1,76 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide cache of decoded and scaled sprites, keyed by resource and cell size.
+ * Every sprite is decoded and scaled once into an image compatible with the screen,
+ * then the same instance is handed to every board and every game.
+ */
+public final class SpriteCache {
+    private static final Map<Key, BufferedImage> SPRITES = new ConcurrentHashMap<>();
+    private static final Map<String, BufferedImage> ORIGINALS = new ConcurrentHashMap<>();
+
+    private record Key(String resource, int size) {
+    }
+
+    private SpriteCache() {
+    }
+
+    /**
+     * The image under images/ scaled to size x size pixels, or null if it does not exist.
+     * Safe to call from any thread.
+     */
+    public static BufferedImage get(String name, int size) {
+        return SPRITES.computeIfAbsent(new Key(name, size), key -> {
+            BufferedImage original = original(key.resource());
+            return original == null ? null : scale(original, key.size(), key.size());
+        });
+    }
+
+    /** The decoded image under images/ at its own size, or null if it does not exist. */
+    public static BufferedImage original(String name) {
+        return ORIGINALS.computeIfAbsent(name, SpriteCache::decode);
+    }
+
+    private static BufferedImage decode(String name) {
+        try (InputStream in = SpriteCache.class.getClassLoader().getResourceAsStream("images/" + name)) {
+            if (in == null) {
+                System.out.println("Could not find image: " + name);
+                return null;
+            }
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            System.out.println("Could not read image: " + name);
+            return null;
+        }
+    }
+
+    /** Scales an image into a new image in the screen's pixel format. */
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage scaled = createCompatibleImage(width, height, source.getTransparency());
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+}
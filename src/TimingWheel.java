@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel of timers that fire on a given tick, each carrying an int payload.
+ *
+ * A timer lives in the slot of its deadline modulo the wheel size, so moving to the next
+ * tick looks at one slot instead of every timer. As long as deadlines are less than a wheel
+ * turn ahead, everything in that slot is due, otherwise the timers of later turns are
+ * skipped over. Scheduling and cancelling are O(1), the timers are kept in primitive arrays
+ * linked by index and reused, so nothing is allocated once the pool is big enough.
+ */
+public class TimingWheel {
+    private static final int NONE = -1;
+
+    private final int mask;
+    private final int[] slotHead;
+    private long[] deadline;
+    private int[] payload;
+    private int[] next;
+    private int[] previous;
+    private int free = NONE; // unused timers, linked through next
+    private int used;        // timers handed out at least once, the rest of the arrays is untouched
+    private long cursor;     // the next tick to look at
+
+    /** A wheel of slots ticks, rounded up to a power of two, starting at tick start. */
+    public TimingWheel(int slots, int capacity, long start) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        mask = size - 1;
+        slotHead = new int[size];
+        Arrays.fill(slotHead, NONE);
+        deadline = new long[capacity];
+        payload = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        cursor = start;
+    }
+
+    /** Schedules payload for tick at, which must not have been polled yet. Returns the timer, for cancel. */
+    public int schedule(long at, int payload) {
+        if (at < cursor) {
+            throw new IllegalArgumentException("Tick " + at + " has already passed");
+        }
+        int timer = allocate();
+        this.deadline[timer] = at;
+        this.payload[timer] = payload;
+        int slot = (int) at & mask;
+        int head = slotHead[slot];
+        next[timer] = head;
+        previous[timer] = NONE;
+        if (head != NONE) {
+            previous[head] = timer;
+        }
+        slotHead[slot] = timer;
+        return timer;
+    }
+
+    /** Removes a timer that has not fired yet. */
+    public void cancel(int timer) {
+        unlink(timer);
+        release(timer);
+    }
+
+    /**
+     * Removes and returns the payload of one timer due at or before now, or -1 once there
+     * are none left. Call until it returns -1 every tick.
+     */
+    public int poll(long now) {
+        while (cursor <= now) {
+            for (int timer = slotHead[(int) cursor & mask]; timer != NONE; timer = next[timer]) {
+                if (deadline[timer] == cursor) {
+                    int fired = payload[timer];
+                    cancel(timer);
+                    return fired;
+                }
+            }
+            cursor++;
+        }
+        return NONE;
+    }
+
+    /** Drops every timer and starts over at tick start. */
+    public void reset(long start) {
+        Arrays.fill(slotHead, NONE);
+        free = NONE;
+        used = 0;
+        cursor = start;
+    }
+
+    private int allocate() {
+        if (free != NONE) {
+            int timer = free;
+            free = next[timer];
+            return timer;
+        }
+        if (used == deadline.length) {
+            int capacity = Math.max(4, used * 2);
+            deadline = Arrays.copyOf(deadline, capacity);
+            payload = Arrays.copyOf(payload, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+        return used++;
+    }
+
+    private void release(int timer) {
+        next[timer] = free;
+        free = timer;
+    }
+
+    private void unlink(int timer) {
+        int before = previous[timer];
+        int after = next[timer];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            slotHead[(int) deadline[timer] & mask] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+    }
+}
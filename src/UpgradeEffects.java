@@ -0,0 +1,144 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Upgrades in effect in one game, applied by type and stacking rule and expired by a
+ * TimingWheel, so a tick costs the same however many effects are running. Pacman and
+ * the rules ask it what is active. Effects that change other entities change them once
+ * on apply and back on expiry, the slow down sets every ghost's speed in the GhostSwarm.
+ */
+public class UpgradeEffects {
+    private static final UpgradeType[] TYPES = UpgradeType.values();
+    private static final int NO_TIMER = -1;
+    // a wheel turn covers the longest effect, so every tick looks at one slot of due timers
+    private static final int WHEEL_SLOTS = 512;
+    // the slow down multiplies the ticks between ghost moves
+    private static final int GHOST_SLOW_DOWN = 2;
+    // bytes per type written by writeTo
+    static final int STATE_BYTES = TYPES.length * 8;
+
+    private final GameState game;
+    private final TimingWheel wheel = new TimingWheel(WHEEL_SLOTS, TYPES.length, 0);
+    private final int[] stacks = new int[TYPES.length];     // 0 when not active
+    private final int[] expiresAt = new int[TYPES.length];  // tick the effect ends on
+    private final int[] timer = new int[TYPES.length];
+
+    public UpgradeEffects(GameState game) {
+        this.game = game;
+        Arrays.fill(timer, NO_TIMER);
+    }
+
+    public boolean isActive(UpgradeType type) {
+        return stacks[type.ordinal()] > 0;
+    }
+
+    public int getStacks(UpgradeType type) {
+        return stacks[type.ordinal()];
+    }
+
+    /** Ticks until the effect ends, 0 when it is not active. */
+    public int getRemainingTicks(UpgradeType type, int now) {
+        return isActive(type) ? expiresAt[type.ordinal()] - now : 0;
+    }
+
+    /** Points a pellet is worth, base points times one more for every double score stack. */
+    public int pelletPoints(int base) {
+        return base * (1 + stacks[UpgradeType.DOUBLE_SCORE.ordinal()]);
+    }
+
+    /** Starts or stacks the effect of a picked up upgrade at tick now. */
+    public void apply(UpgradeType type, int now) {
+        int i = type.ordinal();
+        int duration = type.getDurationTicks();
+        boolean starting = stacks[i] == 0;
+        switch (type.getStacking()) {
+            case INSTANT -> {
+                start(type);
+                return;
+            }
+            case REFRESH -> {
+                stacks[i] = 1;
+                expiresAt[i] = now + duration;
+            }
+            case EXTEND -> {
+                stacks[i] = 1;
+                int from = starting ? now : expiresAt[i];
+                expiresAt[i] = Math.min(from + duration, now + duration * type.getMaxStacks());
+            }
+            case STACK -> {
+                stacks[i] = Math.min(stacks[i] + 1, type.getMaxStacks());
+                expiresAt[i] = now + duration;
+            }
+        }
+        if (timer[i] != NO_TIMER) {
+            wheel.cancel(timer[i]);
+        }
+        timer[i] = wheel.schedule(expiresAt[i], i);
+        if (starting) {
+            start(type);
+        }
+    }
+
+    /** Ends every effect whose time is up, called once per tick. */
+    public void tick(int now) {
+        for (int i = wheel.poll(now); i >= 0; i = wheel.poll(now)) {
+            timer[i] = NO_TIMER;
+            end(TYPES[i]);
+        }
+    }
+
+    /** Ends every effect at once, when Pacman is caught. */
+    public void clear() {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (timer[i] != NO_TIMER) {
+                wheel.cancel(timer[i]);
+                timer[i] = NO_TIMER;
+                end(TYPES[i]);
+            }
+        }
+    }
+
+    // what an effect does to the rest of the game when it begins and ends, the rest is asked for
+    private void start(UpgradeType type) {
+        switch (type) {
+            case EXTRA_LIFE -> game.incrementLives();
+            case SLOW_DOWN_GHOSTS -> scaleGhostSpeeds(GHOST_SLOW_DOWN, 1);
+            default -> {
+            }
+        }
+    }
+
+    private void end(UpgradeType type) {
+        stacks[type.ordinal()] = 0;
+        if (type == UpgradeType.SLOW_DOWN_GHOSTS) {
+            scaleGhostSpeeds(1, GHOST_SLOW_DOWN);
+        }
+    }
+
+    private void scaleGhostSpeeds(int multiply, int divide) {
+        GhostSwarm ghosts = game.getGhosts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.setSpeed(i, ghosts.getSpeed(i) * multiply / divide);
+        }
+    }
+
+    // stacks and ticks left of every type, the ghost speeds are saved with the ghosts
+    void writeTo(ByteBuffer out, int now) {
+        for (int i = 0; i < TYPES.length; i++) {
+            out.putInt(stacks[i]).putInt(stacks[i] > 0 ? expiresAt[i] - now : 0);
+        }
+    }
+
+    void readFrom(ByteBuffer in, int now) {
+        wheel.reset(now + 1);
+        for (int i = 0; i < TYPES.length; i++) {
+            stacks[i] = in.getInt();
+            int remaining = in.getInt();
+            timer[i] = NO_TIMER;
+            if (stacks[i] > 0) {
+                expiresAt[i] = now + remaining;
+                timer[i] = wheel.schedule(expiresAt[i], i);
+            }
+        }
+    }
+}
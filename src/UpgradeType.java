@@ -0,0 +1,49 @@
+/**
+ * The upgrades Pacman can pick up, how long each one lasts and what picking it up
+ * again while it is still active does. Durations are in game ticks.
+ */
+public enum UpgradeType {
+    /** Pacman moves twice as often. */
+    SPEED(10_000, Stacking.REFRESH, 1),
+    /** One more life, right away. */
+    EXTRA_LIFE(0, Stacking.INSTANT, 1),
+    /** Every ghost moves half as often. */
+    SLOW_DOWN_GHOSTS(8_000, Stacking.EXTEND, 3),
+    /** Ghosts can't hurt Pacman. */
+    INVINCIBILITY(6_000, Stacking.EXTEND, 3),
+    /** Each stack adds the base points of a pellet once more. */
+    DOUBLE_SCORE(15_000, Stacking.STACK, 3);
+
+    public enum Stacking {
+        /** Applied once and over, nothing to expire. */
+        INSTANT,
+        /** Picking it up again restarts the timer. */
+        REFRESH,
+        /** Picking it up again adds another duration, up to maxStacks durations left. */
+        EXTEND,
+        /** Picking it up again adds a stack, up to maxStacks, and restarts the timer. All stacks go at once. */
+        STACK
+    }
+
+    private final int durationTicks;
+    private final Stacking stacking;
+    private final int maxStacks;
+
+    UpgradeType(int durationMillis, Stacking stacking, int maxStacks) {
+        this.durationTicks = durationMillis / GameState.TICK_MILLIS;
+        this.stacking = stacking;
+        this.maxStacks = maxStacks;
+    }
+
+    public int getDurationTicks() {
+        return durationTicks;
+    }
+
+    public Stacking getStacking() {
+        return stacking;
+    }
+
+    public int getMaxStacks() {
+        return maxStacks;
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A running game allocates nothing per tick on the game loop thread: the step, the
+ * metrics and publishing the frame for the EDT. Ticks are measured one at a time with
+ * the thread's allocation counter after a warm up long enough for the JIT, ticks that
+ * start or end a game are left out. Any other tick that allocates fails the test.
+ *
+ * Runs in a JVM of its own with the C1 compiler only, see game/pom.xml. The first time
+ * C2 compiles a method, HotSpot resolves every string literal of its class on the thread
+ * that asked for the compile. That is a one time allocation of a few hundred bytes at a
+ * tick that depends on the JIT's timing, not on the game. C1 does not do that, and since
+ * it has no escape analysis either, an allocation the code only gets away with because
+ * C2 optimizes it out fails here too.
+ */
+class AllocationTest {
+    private static final int WARM_TICKS = 30_000;
+    private static final int MEASURED_TICKS = 20_000;
+
+    @Test
+    void smallGameAllocatesNothingPerTick() {
+        assertNoTickAllocates("small", 5, WARM_TICKS, MEASURED_TICKS);
+    }
+
+    @Test
+    void largeGameAllocatesNothingPerTick() {
+        assertNoTickAllocates("large", 50, WARM_TICKS, MEASURED_TICKS);
+    }
+
+    @Test
+    void hugeGameAllocatesNothingPerTick() {
+        assertNoTickAllocates("huge", 500, WARM_TICKS, MEASURED_TICKS);
+    }
+
+    @Test
+    void giantGameAllocatesNothingPerTick() {
+        // enough ghosts to move them on the fork/join pool, fewer ticks as each one is slow
+        assertNoTickAllocates("giant", GhostSwarm.PARALLEL_THRESHOLD * 2, WARM_TICKS / 3, MEASURED_TICKS / 2);
+    }
+
+    private static void assertNoTickAllocates(String sizeType, int ghosts, int warmTicks, int measuredTicks) {
+        Assumptions.assumeTrue(GameMetrics.allocatedBytes() >= 0, "no per thread allocation counter");
+        Random input = new Random(42);
+        Loop loop = new Loop(sizeType, ghosts, 1);
+        for (int i = 0; i < warmTicks; i++) {
+            if (loop.state.isGameOver()) {
+                loop = new Loop(sizeType, ghosts, loop.seed + 1);
+            }
+            loop.tick(input);
+        }
+
+        List<String> allocating = new ArrayList<>();
+        for (int i = 0; i < measuredTicks; i++) {
+            if (loop.state.isGameOver()) {
+                loop = new Loop(sizeType, ghosts, loop.seed + 1);
+                continue;
+            }
+            long before = GameMetrics.allocatedBytes();
+            loop.tick(input);
+            long allocated = GameMetrics.allocatedBytes() - before;
+            if (allocated > 0 && !loop.state.isGameOver()) { // whatever ends a game may allocate
+                allocating.add("tick " + i + ": " + allocated + " B");
+            }
+        }
+        assertEquals(List.of(), allocating);
+    }
+
+    // what Board does on the loop thread per tick, without Swing
+    private static final class Loop {
+        final long seed;
+        final GameState state;
+        final FrameBuffer frames;
+        final GameMetrics metrics = new GameMetrics();
+        private long allocatedBefore = -1;
+
+        Loop(String sizeType, int ghosts, long seed) {
+            this.seed = seed;
+            int size = GameState.sizeFor(sizeType);
+            state = new GameState(size, ghosts, seed);
+            frames = new FrameBuffer(size, ghosts);
+            state.setMetrics(metrics);
+        }
+
+        void tick(Random input) {
+            state.step(input.nextInt(8) == 0 ? input.nextInt(4) : GameState.NO_INPUT);
+            long allocated = GameMetrics.allocatedBytes();
+            metrics.tickDone(state, allocatedBefore >= 0 ? allocated - allocatedBefore : -1);
+            allocatedBefore = allocated;
+            frames.publish(state);
+        }
+    }
+}
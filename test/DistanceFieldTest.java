@@ -0,0 +1,142 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The early exit and the resumed searches give the same distances as a full breadth-first search. */
+class DistanceFieldTest {
+
+    @Test
+    void matchesFullSearchAsPacmanAndGhostsMove() {
+        for (int size : new int[]{15, 41}) {
+            for (long seed = 0; seed < 20; seed++) {
+                Maze maze = MazeGenerator.generate(size, seed);
+                BitGrid walls = new BitGrid(size, size);
+                maze.copyWallsTo(walls);
+                Random random = new Random(seed);
+                GhostSwarm ghosts = new GhostSwarm(size, size, 6);
+                for (int i = 0; i < ghosts.size(); i++) {
+                    placeOnOpenCell(ghosts, i, walls, random);
+                }
+                DistanceField field = new DistanceField(size, size);
+                int px = maze.getStartX(), py = maze.getStartY();
+                for (int step = 0; step < 50; step++) {
+                    if (random.nextBoolean()) {
+                        int cell = openCell(walls, random);
+                        px = cell / size;
+                        py = cell % size;
+                    }
+                    // a steered ghost or one sent home can land anywhere, also while Pacman stays put
+                    placeOnOpenCell(ghosts, random.nextInt(ghosts.size()), walls, random);
+                    field.update(walls, ghosts, px, py);
+                    assertMatchesFullSearch(field, walls, ghosts, px, py);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findsGhostThatMovedPastTheSearchWhilePacmanStayed() {
+        int size = 41;
+        Maze maze = MazeGenerator.generate(size, 7);
+        BitGrid walls = new BitGrid(size, size);
+        maze.copyWallsTo(walls);
+        int px = maze.getStartX(), py = maze.getStartY();
+        int[] expected = fullSearch(walls, px, py);
+        int near = -1, far = -1;
+        for (int cell = 0; cell < expected.length; cell++) {
+            if (expected[cell] == 1) {
+                near = cell;
+            }
+            if (expected[cell] != DistanceField.UNREACHABLE && (far < 0 || expected[cell] > expected[far])) {
+                far = cell;
+            }
+        }
+
+        GhostSwarm ghosts = new GhostSwarm(size, size, 1);
+        ghosts.place(0, near / size, near % size, 1, 0);
+        DistanceField field = new DistanceField(size, size);
+        field.update(walls, ghosts, px, py);
+        ghosts.place(0, far / size, far % size, 1, 0);
+        field.update(walls, ghosts, px, py);
+        assertEquals(expected[far], field.distanceAt(far / size, far % size));
+    }
+
+    @Test
+    void ghostInSealedPocketIsUnreachable() {
+        // a 5x5 board with the corner cell (0, 0) walled off from the rest
+        BitGrid walls = new BitGrid(5, 5);
+        walls.set(0, 1);
+        walls.set(1, 0);
+        walls.set(1, 1);
+        GhostSwarm ghosts = new GhostSwarm(5, 5, 2);
+        ghosts.place(0, 0, 0, 1, 0);
+        ghosts.place(1, 4, 4, 1, 1);
+        DistanceField field = new DistanceField(5, 5);
+        field.update(walls, ghosts, 2, 2);
+        assertEquals(DistanceField.UNREACHABLE, field.distanceAt(0, 0));
+        assertEquals(4, field.distanceAt(4, 4));
+        // searching again without Pacman moving changes nothing
+        field.update(walls, ghosts, 2, 2);
+        assertEquals(DistanceField.UNREACHABLE, field.distanceAt(0, 0));
+        assertEquals(4, field.distanceAt(4, 4));
+    }
+
+    // every ghost has its true distance, and every cell the search found is right
+    private static void assertMatchesFullSearch(DistanceField field, BitGrid walls, GhostSwarm ghosts, int px, int py) {
+        int columns = walls.getColumns();
+        int[] expected = fullSearch(walls, px, py);
+        for (int i = 0; i < ghosts.size(); i++) {
+            int cell = ghosts.getX(i) * columns + ghosts.getY(i);
+            assertEquals(expected[cell], field.distanceAt(ghosts.getX(i), ghosts.getY(i)), "ghost " + i);
+        }
+        for (int cell = 0; cell < expected.length; cell++) {
+            int found = field.distanceAt(cell / columns, cell % columns);
+            if (found != DistanceField.UNREACHABLE) {
+                assertEquals(expected[cell], found, "cell " + cell);
+            }
+        }
+    }
+
+    private static int[] fullSearch(BitGrid walls, int x, int y) {
+        int rows = walls.getRows(), columns = walls.getColumns();
+        int[] distance = new int[rows * columns];
+        Arrays.fill(distance, DistanceField.UNREACHABLE);
+        int[] queue = new int[rows * columns];
+        int head = 0, tail = 0;
+        distance[x * columns + y] = 0;
+        queue[tail++] = x * columns + y;
+        while (head < tail) {
+            int cell = queue[head++];
+            int cx = cell / columns, cy = cell % columns;
+            int[][] neighbors = {{cx - 1, cy}, {cx + 1, cy}, {cx, cy - 1}, {cx, cy + 1}};
+            for (int[] n : neighbors) {
+                if (n[0] < 0 || n[1] < 0 || n[0] >= rows || n[1] >= columns || walls.get(n[0], n[1])) {
+                    continue;
+                }
+                int next = n[0] * columns + n[1];
+                if (distance[next] == DistanceField.UNREACHABLE) {
+                    distance[next] = distance[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static void placeOnOpenCell(GhostSwarm ghosts, int i, BitGrid walls, Random random) {
+        int cell = openCell(walls, random);
+        ghosts.place(i, cell / walls.getColumns(), cell % walls.getColumns(), 1, i % GameState.GHOST_SPRITES);
+    }
+
+    private static int openCell(BitGrid walls, Random random) {
+        int x, y;
+        do {
+            x = random.nextInt(walls.getRows());
+            y = random.nextInt(walls.getColumns());
+        } while (walls.get(x, y));
+        return x * walls.getColumns() + y;
+    }
+}
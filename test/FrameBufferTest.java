@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Snapshots that copy only the changed words still show exactly the published state. */
+class FrameBufferTest {
+
+    @Test
+    void framesMatchTheStateWhateverFramesTheEdtSkips() {
+        int size = 21;
+        GameState state = new GameState(size, 4, 3);
+        state.setUpgradeOdds(1f, 1);
+        FrameBuffer frames = new FrameBuffer(size, 4);
+        Random random = new Random(3);
+        ByteBuffer saved = null;
+        for (int tick = 0; tick < 3000 && !state.isGameOver(); tick++) {
+            state.step(random.nextInt(4));
+            if (tick == 500) {
+                saved = ByteBuffer.allocate(state.stateBytes());
+                state.writeState(saved);
+            } else if (tick == 1500) {
+                saved.flip();
+                state.readState(saved); // every word replaced at once
+            }
+            frames.publish(state);
+            if (random.nextInt(5) == 0) { // the EDT takes frames now and then, the loop keeps rotating
+                assertMatches(state, frames.latest());
+            }
+        }
+        assertMatches(state, frames.latest());
+    }
+
+    @Test
+    void copyFallsBackToTheWholeLayerPastTheJournal() {
+        BitGrid grid = new BitGrid(64, 64);
+        long[] copy = new long[grid.wordCount()];
+        long version = grid.copyChangesTo(copy, -1);
+        Random random = new Random(5);
+        for (int round = 0; round < 3; round++) {
+            int changes = round == 1 ? BitGrid.JOURNAL_SIZE * 2 : 10;
+            for (int i = 0; i < changes; i++) {
+                if (random.nextBoolean()) {
+                    grid.set(random.nextInt(64), random.nextInt(64));
+                } else {
+                    grid.clear(random.nextInt(64), random.nextInt(64));
+                }
+            }
+            version = grid.copyChangesTo(copy, version);
+            long[] full = new long[grid.wordCount()];
+            grid.copyTo(full);
+            assertArrayEquals(full, copy, "round " + round);
+        }
+    }
+
+    @Test
+    void snapshotsShowTheMazeWalls() {
+        GameState state = new GameState(15, 2, 1);
+        FrameBuffer frames = new FrameBuffer(15, 2);
+        for (int frame = 0; frame < 3; frame++) { // each of the three snapshots
+            state.step(GameState.NO_INPUT);
+            frames.publish(state);
+            FrameSnapshot snapshot = frames.latest();
+            for (int x = 0; x < 15; x++) {
+                for (int y = 0; y < 15; y++) {
+                    assertEquals(state.getMaze().isWall(x, y), snapshot.isWall(x, y));
+                }
+            }
+        }
+    }
+
+    private static void assertMatches(GameState state, FrameSnapshot frame) {
+        int words = (state.getBoardSize() * state.getBoardSize() + 63) >>> 6;
+        long[] food = new long[words];
+        long[] upgrades = new long[words];
+        state.copyFood(food);
+        state.copyUpgrades(upgrades);
+        assertEquals(state.getTick(), frame.getTick());
+        assertArrayEquals(food, frame.foodWords(), "food at tick " + frame.getTick());
+        assertArrayEquals(upgrades, frame.upgradeWords(), "upgrades at tick " + frame.getTick());
+    }
+}
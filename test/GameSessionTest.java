@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A tick that throws ends its session instead of silently stopping the schedule. */
+class GameSessionTest {
+
+    @Test
+    void exceptionInTickStopsTheSession() throws InterruptedException {
+        assertStopsOn(new IllegalStateException("broken tick"));
+    }
+
+    @Test
+    void errorInTickStopsTheSession() throws InterruptedException {
+        assertStopsOn(new StackOverflowError());
+    }
+
+    @Test
+    void stoppingNormallyLeavesNoFailure() {
+        AtomicInteger released = new AtomicInteger();
+        GameSession session = new GameSession(() -> { }, () -> { }, released::incrementAndGet);
+        session.start();
+        session.stop();
+        session.stop();
+        assertEquals(GameSession.State.STOPPED, session.getState());
+        assertNull(session.getFailure());
+        assertEquals(1, released.get());
+    }
+
+    private static void assertStopsOn(Throwable thrown) throws InterruptedException {
+        AtomicInteger updates = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        CountDownLatch stopped = new CountDownLatch(1);
+        GameSession session = new GameSession(() -> {
+            if (updates.incrementAndGet() == 3) {
+                if (thrown instanceof Error) {
+                    throw (Error) thrown;
+                }
+                throw (RuntimeException) thrown;
+            }
+        }, () -> { }, () -> {
+            released.incrementAndGet();
+            stopped.countDown();
+        });
+        session.start();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(GameSession.State.STOPPED, session.getState());
+        assertSame(thrown, session.getFailure());
+        Thread.sleep(5 * GameSession.TICK_MILLIS);
+        assertEquals(3, updates.get(), "no tick after the failure");
+        assertEquals(1, released.get());
+    }
+}
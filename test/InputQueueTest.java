@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/** Every direction pressed within one tick reaches Pacman, and he turns them in order. */
+class InputQueueTest {
+
+    @Test
+    void drainTakesEveryRequestOldestFirst() {
+        InputQueue queue = new InputQueue();
+        int[] pressed = new int[InputQueue.CAPACITY];
+        for (int round = 0; round < 3; round++) { // around the ring more than once
+            for (int i = 0; i < 40; i++) {
+                queue.offer(i % 4, 1000 + i);
+            }
+            assertEquals(40, queue.drain(pressed));
+            assertEquals(1000, queue.getDrainedSince());
+            for (int i = 0; i < 40; i++) {
+                assertEquals(i % 4, pressed[i]);
+            }
+        }
+        assertEquals(0, queue.drain(pressed));
+        assertEquals(0, queue.getDrainedSince());
+    }
+
+    @Test
+    void twoTurnsInOneTickAreBothTaken() {
+        for (long seed = 1; seed < 100; seed++) {
+            GameState state = new GameState(15, 0, seed);
+            int x = state.getPacman().getX(), y = state.getPacman().getY();
+            for (int first : new int[]{GameState.UP, GameState.DOWN, GameState.LEFT}) { // he starts facing right
+                // the second turn opens up within the moves a pending turn is waited for
+                int[] cells = new int[8];
+                int cx = x, cy = y;
+                for (int straight = 0; straight < 3 && !state.isWall(cx + stepX(first), cy + stepY(first)); straight++) {
+                    cx += stepX(first);
+                    cy += stepY(first);
+                    cells[straight * 2] = cx;
+                    cells[straight * 2 + 1] = cy;
+                    int second = turnFrom(state, cx, cy, first);
+                    if (second < 0) {
+                        continue;
+                    }
+                    cells[straight * 2 + 2] = cx + stepX(second);
+                    cells[straight * 2 + 3] = cy + stepY(second);
+                    int[] expected = Arrays.copyOf(cells, straight * 2 + 4);
+
+                    state.step(new int[]{first, second}, 2);
+                    ByteBuffer saved = ByteBuffer.allocate(state.stateBytes());
+                    state.writeState(saved);
+                    saved.flip();
+                    GameState restored = GameState.fromState(saved); // the turn not taken yet is saved with him
+
+                    assertArrayEquals(expected, nextCells(state, straight + 2));
+                    assertArrayEquals(expected, nextCells(restored, straight + 2));
+                    return;
+                }
+            }
+        }
+        fail("no maze with two turns in a row near the start");
+    }
+
+    // an open way off to the side of cell, -1 if there is none
+    private static int turnFrom(GameState state, int x, int y, int heading) {
+        for (int direction = 0; direction < 4; direction++) {
+            boolean sideways = stepX(direction) != 0 ? stepX(heading) == 0 : stepY(heading) == 0;
+            if (sideways && !state.isWall(x + stepX(direction), y + stepY(direction))) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    // the next cells Pacman moves to, x and y of each
+    private static int[] nextCells(GameState state, int count) {
+        int[] cells = new int[count * 2];
+        int x = state.getPacman().getX(), y = state.getPacman().getY();
+        for (int moved = 0; moved < count; ) {
+            state.step(GameState.NO_INPUT);
+            Pacman pacman = state.getPacman();
+            if (pacman.getX() != x || pacman.getY() != y) {
+                x = pacman.getX();
+                y = pacman.getY();
+                cells[moved * 2] = x;
+                cells[moved * 2 + 1] = y;
+                moved++;
+            }
+        }
+        return cells;
+    }
+
+    // x is the row, like in Pacman
+    private static int stepX(int direction) {
+        return direction == GameState.UP ? -1 : direction == GameState.DOWN ? 1 : 0;
+    }
+
+    private static int stepY(int direction) {
+        return direction == GameState.LEFT ? -1 : direction == GameState.RIGHT ? 1 : 0;
+    }
+}
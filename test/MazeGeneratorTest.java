@@ -0,0 +1,126 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Sealed mazes are connected and walled in, and a seed always gives the same one. */
+class MazeGeneratorTest {
+    // odd and even sizes, the start on a room and on a pillar, up to a board that needs many wall words
+    private static final int[] SIZES = {3, 4, 5, 6, 7, 15, 16, 21, 22, 64, 257};
+
+    @Test
+    void everyOpenCellIsReachableFromTheStart() {
+        for (int size : SIZES) {
+            for (long seed = 0; seed < 20; seed++) {
+                Maze maze = MazeGenerator.generate(size, seed);
+                String which = "size " + size + " seed " + seed;
+                assertFalse(maze.isWall(maze.getStartX(), maze.getStartY()), which);
+                for (int i = 0; i < size; i++) {
+                    assertTrue(maze.isWall(0, i) && maze.isWall(size - 1, i), which + " border row " + i);
+                    assertTrue(maze.isWall(i, 0) && maze.isWall(i, size - 1), which + " border column " + i);
+                }
+                int open = 0;
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        open += maze.isWall(x, y) ? 0 : 1;
+                    }
+                }
+                assertEquals(open, maze.getOpenCells(), which);
+                assertEquals(open, reachable(maze), which + ": open cells the start can't reach");
+            }
+        }
+    }
+
+    @Test
+    void pelletsAndGhostsAreOnlyOnOpenCells() {
+        for (long seed = 0; seed < 20; seed++) {
+            GameState state = new GameState(21, 10, seed);
+            int food = 0;
+            for (int x = 0; x < 21; x++) {
+                for (int y = 0; y < 21; y++) {
+                    if (state.isFood(x, y)) {
+                        assertFalse(state.isWall(x, y), "seed " + seed + " pellet in a wall");
+                        food++;
+                    }
+                }
+            }
+            assertEquals(state.getMaze().getOpenCells(), food, "seed " + seed + ": a pellet on every open cell");
+            GhostSwarm ghosts = state.getGhosts();
+            for (int i = 0; i < ghosts.size(); i++) {
+                assertFalse(state.isWall(ghosts.getX(i), ghosts.getY(i)), "seed " + seed + " ghost " + i);
+            }
+        }
+    }
+
+    @Test
+    void largerMazesHaveLoops() {
+        for (long seed = 0; seed < 20; seed++) {
+            Maze maze = MazeGenerator.generate(21, seed);
+            int passages = 0; // between two open neighbours, a tree over the open cells has one less than them
+            for (int x = 0; x < 21; x++) {
+                for (int y = 0; y < 21; y++) {
+                    if (!maze.isWall(x, y)) {
+                        passages += (x + 1 < 21 && !maze.isWall(x + 1, y) ? 1 : 0) + (y + 1 < 21 && !maze.isWall(x, y + 1) ? 1 : 0);
+                    }
+                }
+            }
+            assertTrue(passages > maze.getOpenCells() - 1, "seed " + seed + " is a tree");
+        }
+    }
+
+    @Test
+    void sameSeedGivesTheSameMaze() {
+        for (int size : SIZES) {
+            long[] first = walls(MazeGenerator.generate(size, 7));
+            evictCache();
+            Maze again = MazeGenerator.generate(size, 7);
+            assertArrayEquals(first, walls(again), "size " + size);
+            assertEquals(7, again.getSeed());
+        }
+        assertFalse(Arrays.equals(walls(MazeGenerator.generate(21, 7)), walls(MazeGenerator.generate(21, 8))),
+                "another seed, another maze");
+    }
+
+    @Test
+    void rejectsBoardsTooSmallForAMaze() {
+        assertThrows(IllegalArgumentException.class, () -> MazeGenerator.generate(2, 1));
+    }
+
+    // flood fill of its own, so a bug in the generator's can't hide
+    private static int reachable(Maze maze) {
+        int size = maze.getSize();
+        boolean[] seen = new boolean[size * size];
+        int[] queue = new int[size * size];
+        int head = 0, tail = 0;
+        queue[tail++] = maze.getStartX() * size + maze.getStartY();
+        seen[queue[0]] = true;
+        int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int[] step : steps) {
+                int x = cell / size + step[0], y = cell % size + step[1];
+                if (x >= 0 && x < size && y >= 0 && y < size && !maze.isWall(x, y) && !seen[x * size + y]) {
+                    seen[x * size + y] = true;
+                    queue[tail++] = x * size + y;
+                }
+            }
+        }
+        return tail;
+    }
+
+    private static long[] walls(Maze maze) {
+        return maze.wallWords().clone();
+    }
+
+    // the generator caches recent mazes, enough others push them out so the next call builds anew
+    private static void evictCache() {
+        for (long seed = 1000; seed < 1100; seed++) {
+            MazeGenerator.generate(5, seed);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A recording played back reaches exactly the state the game was in, from the start or from any keyframe. */
+class ReplayTest {
+    private static final int TICKS = ReplayRecorder.KEYFRAME_TICKS * 3 + 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReachesTheRecordedEnd() throws IOException {
+        Recording recording = record(new GameState(51, 2, 11), dir.resolve("game.rpl"));
+        Replay replay = Replay.load(recording.file);
+
+        GameState played = replay.start();
+        replay.play(played, replay.getLastTick());
+        assertTrue(played.isGameOver(), "the ghosts ended the game");
+        assertTrue(replay.matchesEnd(played));
+        assertArrayEquals(recording.end, bytes(played));
+    }
+
+    @Test
+    void seekingFromAKeyframeReachesTheSameStates() throws IOException {
+        // without ghosts the game lasts past a few keyframes
+        Recording recording = record(new GameState(51, 0, 12), dir.resolve("game.rpl"));
+        Replay replay = Replay.load(recording.file);
+        assertTrue(replay.getKeyframeCount() > 0);
+        assertTrue(recording.states.size() > 3);
+        for (Map.Entry<Integer, byte[]> seen : recording.states.entrySet()) {
+            assertArrayEquals(seen.getValue(), bytes(replay.seek(seen.getKey())), "tick " + seen.getKey());
+        }
+        assertArrayEquals(recording.end, bytes(replay.seek(replay.getLastTick())));
+    }
+
+    @Test
+    void resumedGameReplaysFromItsFirstKeyframe() throws IOException {
+        GameState game = new GameState(51, 0, 13);
+        Random random = new Random(13);
+        for (int i = 0; i < 500; i++) {
+            game.step(random.nextInt(10) == 0 ? random.nextInt(4) : GameState.NO_INPUT);
+        }
+        GameState resumed = GameState.fromState(ByteBuffer.wrap(bytes(game))); // like a loaded save
+
+        Recording recording = record(resumed, dir.resolve("resumed.rpl"));
+        Replay replay = Replay.load(recording.file);
+        assertTrue(replay.getKeyframeCount() > 1);
+        assertEquals(500, replay.start().getTick());
+        GameState played = replay.seek(replay.getLastTick());
+        assertTrue(replay.matchesEnd(played));
+        assertArrayEquals(recording.end, bytes(played));
+    }
+
+    // plays the game like Board does, a few times two keys in one tick, and keeps states to compare with
+    private static Recording record(GameState state, Path file) throws IOException {
+        Recording recording = new Recording(file);
+        ReplayRecorder recorder = new ReplayRecorder(file, state);
+        Random random = new Random(state.getSeed());
+        int[] pressed = new int[2];
+        int last = state.getTick() + TICKS;
+        while (state.getTick() < last && !state.isGameOver()) {
+            int count = random.nextInt(12) == 0 ? 1 + random.nextInt(2) : 0;
+            for (int i = 0; i < count; i++) {
+                pressed[i] = random.nextInt(4);
+                recorder.record(state.getTick(), pressed[i]);
+            }
+            state.step(pressed, count);
+            recorder.stepped(state);
+            if (state.getTick() % 700 == 0 || state.getTick() % ReplayRecorder.KEYFRAME_TICKS == 0) {
+                recording.states.put(state.getTick(), bytes(state)); // between keyframes and right on them
+            }
+        }
+        recorder.close(state);
+        recording.end = bytes(state);
+        return recording;
+    }
+
+    private static byte[] bytes(GameState state) {
+        ByteBuffer out = ByteBuffer.allocate(state.stateBytes());
+        state.writeState(out);
+        return out.array();
+    }
+
+    private static final class Recording {
+        final Path file;
+        final Map<Integer, byte[]> states = new HashMap<>();
+        byte[] end;
+
+        Recording(Path file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Crash recovery, compaction and sharing of the append only score log. */
+class ScoreStoreTest {
+    private static final int[] SIZES = {15, 21, 256};
+    private static final int KEEP_ALL = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadsAcrossMapWindowBoundaries() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        List<HighScore> played = new ArrayList<>();
+        ScoreStore store = new ScoreStore(file, KEEP_ALL);
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            // names of different lengths so records straddle the windows at different offsets
+            String name = "player" + "x".repeat(random.nextInt(20)) + i;
+            int score = random.nextInt(1000);
+            int size = SIZES[i % SIZES.length];
+            store.append(name, score, size);
+            played.add(new HighScore(name, score, size, 0));
+        }
+        store.close();
+
+        // 64 bytes hold one or two records, every window ends inside one
+        ScoreStore mapped = new ScoreStore(file, KEEP_ALL, 64);
+        assertEquals(300, mapped.size());
+        assertEquals(expectedTop(played, -1), describe(mapped.top()));
+        for (int size : SIZES) {
+            assertEquals(expectedTop(played, size), describe(mapped.top(size)));
+        }
+        mapped.close();
+    }
+
+    @Test
+    void tornTailIsCutOffAndLaterGamesSurvive() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        ScoreStore store = new ScoreStore(file, KEEP_ALL);
+        for (int i = 0; i < 5; i++) {
+            store.append("p" + i, 100 + i, 15);
+        }
+        store.close();
+        long whole = Files.size(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(whole - 5); // the crash hit while the last record was written
+        }
+
+        ScoreStore reopened = new ScoreStore(file, KEEP_ALL);
+        assertEquals(4, reopened.size());
+        assertEquals(103, reopened.top().get(0).getScore());
+        assertTrue(Files.size(file) < whole - 5, "compaction cut the broken tail off");
+        reopened.append("after", 500, 15);
+        reopened.close();
+
+        ScoreStore again = new ScoreStore(file, KEEP_ALL);
+        assertEquals(5, again.size());
+        assertEquals("after", again.top().get(0).getName());
+        again.close();
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsTheLog() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        ScoreStore store = new ScoreStore(file, KEEP_ALL);
+        store.append("first", 10, 15);
+        store.append("second", 20, 15);
+        store.append("third", 30, 15);
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF); // one flipped bit of the last name
+        }
+
+        ScoreStore reopened = new ScoreStore(file, KEEP_ALL);
+        assertEquals(2, reopened.size());
+        assertEquals(List.of("second 20", "first 10"), describe(reopened.top()));
+        reopened.close();
+    }
+
+    @Test
+    void compactionKeepsNewestAndBestAndReplacesTheFile() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        ScoreStore store = new ScoreStore(file, KEEP_ALL);
+        for (int i = 0; i < 40; i++) {
+            store.append("p" + i, i < 10 ? 1000 + i : i, 15);
+        }
+        List<String> top = describe(store.top());
+        ScoreStore other = new ScoreStore(file, KEEP_ALL); // more games open on the old file
+
+        ScoreStore compacting = new ScoreStore(file, 5);
+        compacting.compact();
+        // the 10 best are the oldest games, they stay along with the 5 newest
+        assertEquals(15, compacting.size());
+        assertEquals(top, describe(compacting.top()));
+        assertFalse(Files.exists(dir.resolve("scores.dat.tmp")));
+        compacting.close();
+
+        // the rename left the other stores' channels on the old file, they have to notice
+        other.append("new", 5000, 15);
+        assertEquals(16, other.size());
+        other.close();
+        assertTrue(store.refresh());
+        assertEquals(16, store.size());
+        assertEquals("new", store.top().get(0).getName());
+        store.close();
+
+        ScoreStore reopened = new ScoreStore(file, KEEP_ALL);
+        assertEquals(16, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void appendingCompactsPastTheRetainedHistory() throws IOException {
+        Path file = dir.resolve("scores.dat");
+        ScoreStore store = new ScoreStore(file, 20);
+        for (int i = 0; i < 100; i++) {
+            store.append("p" + i, i, 15);
+        }
+        assertTrue(store.size() <= 25, "kept " + store.size());
+        assertEquals(99, store.top().get(0).getScore());
+        store.close();
+    }
+
+    @Test
+    void twoProcessesAppendUnderTheLock() throws Exception {
+        Path file = dir.resolve("scores.dat");
+        new ScoreStore(file, KEEP_ALL).close();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for (String tag : new String[]{"a", "b"}) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ScoreStoreTest.class.getName(), file.toString(), tag, "200").inheritIO().start());
+        }
+        for (Process process : processes) {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, process.exitValue());
+        }
+
+        ScoreStore store = new ScoreStore(file, KEEP_ALL);
+        assertEquals(400, store.size());
+        // each process scored its games 0..199, a record lost or torn would change the top list
+        assertEquals(List.of(199, 199, 198, 198, 197, 197, 196, 196, 195, 195),
+                store.top().stream().map(HighScore::getScore).collect(Collectors.toList()));
+        store.close();
+    }
+
+    @Test
+    void rejectsBoardSizesTheFileCannotHold() throws IOException {
+        ScoreStore store = new ScoreStore(dir.resolve("scores.dat"), KEEP_ALL);
+        assertThrows(IllegalArgumentException.class, () -> store.append("big", 1, Short.MAX_VALUE + 1));
+        store.append("largest", 1, Short.MAX_VALUE);
+        assertEquals(1, store.top(Short.MAX_VALUE).size());
+        store.close();
+    }
+
+    /** Child process of twoProcessesAppendUnderTheLock: file, name prefix, number of games. */
+    public static void main(String[] args) throws IOException {
+        ScoreStore store = new ScoreStore(Path.of(args[0]), KEEP_ALL);
+        for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+            store.append(args[1] + i, i, 15);
+        }
+        store.close();
+    }
+
+    // best first, on equal scores the earlier game first, like the store keeps them
+    private static List<String> expectedTop(List<HighScore> played, int size) {
+        return describe(played.stream()
+                .filter(score -> size < 0 || score.getBoardSize() == size)
+                .sorted(Comparator.comparingInt(HighScore::getScore).reversed())
+                .limit(ScoreStore.TOP_SIZE)
+                .collect(Collectors.toList()));
+    }
+
+    private static List<String> describe(List<HighScore> scores) {
+        return scores.stream().map(score -> score.getName() + " " + score.getScore()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Stacking rules, expiry on the exact tick and effects that carry over a save. */
+class UpgradeEffectsTest {
+
+    @Test
+    void instantAddsALifeAndNothingRuns() {
+        GameState state = new GameState(15, 2, 1);
+        UpgradeEffects effects = state.getEffects();
+        int lives = state.getLives();
+        effects.apply(UpgradeType.EXTRA_LIFE, 0);
+        effects.apply(UpgradeType.EXTRA_LIFE, 0);
+        assertEquals(lives + 2, state.getLives());
+        assertFalse(effects.isActive(UpgradeType.EXTRA_LIFE));
+    }
+
+    @Test
+    void refreshRestartsTheTimer() {
+        UpgradeEffects effects = new GameState(15, 2, 1).getEffects();
+        int duration = UpgradeType.SPEED.getDurationTicks();
+        effects.apply(UpgradeType.SPEED, 0);
+        tickUntil(effects, 100);
+        effects.apply(UpgradeType.SPEED, 100);
+        assertEquals(1, effects.getStacks(UpgradeType.SPEED));
+        assertEquals(duration, effects.getRemainingTicks(UpgradeType.SPEED, 100));
+        assertEndsOn(effects, UpgradeType.SPEED, 101, 100 + duration);
+    }
+
+    @Test
+    void extendAddsDurationsUpToTheMaximum() {
+        GameState state = new GameState(15, 2, 1);
+        UpgradeEffects effects = state.getEffects();
+        UpgradeType type = UpgradeType.SLOW_DOWN_GHOSTS;
+        int duration = type.getDurationTicks();
+        int speed = state.getGhosts().getSpeed(0);
+        effects.apply(type, 0);
+        tickUntil(effects, 10);
+        effects.apply(type, 10);
+        assertEquals(2 * duration - 10, effects.getRemainingTicks(type, 10));
+        for (int i = 0; i < 3; i++) {
+            effects.apply(type, 10);
+        }
+        assertEquals(1, effects.getStacks(type));
+        assertEquals(duration * type.getMaxStacks(), effects.getRemainingTicks(type, 10));
+        assertEquals(speed * 2, state.getGhosts().getSpeed(0), "slowed down once however often it was picked up");
+        assertEndsOn(effects, type, 11, 10 + duration * type.getMaxStacks());
+        assertEquals(speed, state.getGhosts().getSpeed(0));
+    }
+
+    @Test
+    void stacksAddUpAndAllGoAtOnce() {
+        UpgradeEffects effects = new GameState(15, 2, 1).getEffects();
+        UpgradeType type = UpgradeType.DOUBLE_SCORE;
+        for (int i = 0; i < 5; i++) {
+            tickUntil(effects, i * 20);
+            effects.apply(type, i * 20);
+            assertEquals(Math.min(i + 1, type.getMaxStacks()), effects.getStacks(type));
+        }
+        assertEquals(10 * (1 + type.getMaxStacks()), effects.pelletPoints(10));
+        assertEndsOn(effects, type, 81, 80 + type.getDurationTicks());
+        assertEquals(10, effects.pelletPoints(10));
+    }
+
+    @Test
+    void effectsEndOnTimeTurnAfterTurnOfTheWheel() {
+        UpgradeEffects effects = new GameState(15, 2, 1).getEffects();
+        int tick = 0;
+        // starts spread over many turns of the 512 slot wheel, each effect runs out before the next
+        for (int round = 0; round < 20; round++) {
+            int start = tick + 37 + round * 11;
+            tickUntil(effects, start);
+            effects.apply(UpgradeType.SPEED, start);
+            effects.apply(UpgradeType.INVINCIBILITY, start);
+            int speedEnds = start + UpgradeType.SPEED.getDurationTicks();
+            int invincibleEnds = start + UpgradeType.INVINCIBILITY.getDurationTicks();
+            assertEndsOn(effects, UpgradeType.INVINCIBILITY, start + 1, invincibleEnds);
+            assertEndsOn(effects, UpgradeType.SPEED, invincibleEnds + 1, speedEnds);
+            tick = Math.max(speedEnds, invincibleEnds);
+        }
+    }
+
+    @Test
+    void savedEffectsRunOutOnTheSameTickAfterLoading() {
+        GameState state = new GameState(15, 0, 4); // no ghosts, nothing ends the effects early
+        for (int i = 0; i < 50; i++) {
+            state.step(GameState.NO_INPUT);
+        }
+        UpgradeEffects effects = state.getEffects();
+        effects.apply(UpgradeType.SLOW_DOWN_GHOSTS, state.getTick());
+        effects.apply(UpgradeType.SLOW_DOWN_GHOSTS, state.getTick());
+        effects.apply(UpgradeType.DOUBLE_SCORE, state.getTick());
+        effects.apply(UpgradeType.DOUBLE_SCORE, state.getTick());
+        for (int i = 0; i < 40; i++) {
+            state.step(GameState.NO_INPUT);
+        }
+        effects.apply(UpgradeType.SPEED, state.getTick());
+
+        ByteBuffer saved = ByteBuffer.allocate(state.stateBytes());
+        state.writeState(saved);
+        saved.flip();
+        GameState loaded = GameState.fromState(saved);
+        for (UpgradeType type : UpgradeType.values()) {
+            assertEquals(effects.getStacks(type), loaded.getEffects().getStacks(type), type.name());
+            assertEquals(effects.getRemainingTicks(type, state.getTick()),
+                    loaded.getEffects().getRemainingTicks(type, loaded.getTick()), type.name());
+        }
+
+        int ends = state.getTick() + UpgradeType.SLOW_DOWN_GHOSTS.getDurationTicks() * 2;
+        while (state.getTick() <= ends) {
+            state.step(GameState.NO_INPUT);
+            loaded.step(GameState.NO_INPUT);
+            for (UpgradeType type : UpgradeType.values()) {
+                assertEquals(effects.getStacks(type), loaded.getEffects().getStacks(type),
+                        type.name() + " at tick " + state.getTick());
+            }
+        }
+        assertFalse(loaded.getEffects().isActive(UpgradeType.SLOW_DOWN_GHOSTS));
+        assertEquals(state.getScore(), loaded.getScore());
+    }
+
+    private static void tickUntil(UpgradeEffects effects, int tick) {
+        for (int now = 0; now <= tick; now++) {
+            effects.tick(now);
+        }
+    }
+
+    // ticks from tick from on, the effect has to last until the tick before ends and be gone on it
+    private static void assertEndsOn(UpgradeEffects effects, UpgradeType type, int from, int ends) {
+        for (int now = from; now <= ends; now++) {
+            assertTrue(effects.isActive(type), type + " ended early, before tick " + now);
+            effects.tick(now);
+        }
+        assertFalse(effects.isActive(type), type + " still active after tick " + ends);
+    }
+}